@@ -2,16 +2,18 @@ package com.geomark.maritimemetrics;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.cassandra.repository.config.EnableCassandraRepositories;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @EnableCassandraRepositories(basePackages = "com.geomark.maritimemetrics.repository")
-@EnableAsync
+@EnableScheduling
 @EnableWebSocketMessageBroker
 public class MaritimeMetricsApplication implements WebSocketMessageBrokerConfigurer {
 
@@ -0,0 +1,26 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the streaming vessel analytics (prefix {@code maritime.analytics}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.analytics")
+public class AnalyticsProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of open (vessel, day) sketches after which an ingest flushes its sketches.
+     */
+    private int maxOpenSketches = 2000;
+
+    /**
+     * Legs between points further apart than this are not counted as time in a speed band.
+     */
+    private Duration maxLegDuration = Duration.ofHours(6);
+}
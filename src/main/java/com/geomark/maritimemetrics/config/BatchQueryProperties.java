@@ -0,0 +1,30 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the multi-vessel batch queries (prefix {@code maritime.query.batch}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.query.batch")
+public class BatchQueryProperties {
+
+    /**
+     * Maximum number of partition reads in flight for one batch query.
+     */
+    private int concurrency = 16;
+
+    /**
+     * Maximum number of vessels accepted in one batch query.
+     */
+    private int maxVessels = 1000;
+
+    /**
+     * Width of the time slices a merged query reads at once. Only one slice of the fleet
+     * is held in memory while it is merged.
+     */
+    private Duration mergeSlice = Duration.ofDays(1);
+}
@@ -0,0 +1,27 @@
+package com.geomark.maritimemetrics.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Provides the scheduler for the work that cannot be made non-blocking, like reading uploads
+ * and writing export files, so it never holds request, event loop or driver threads.
+ */
+@Configuration
+public class BlockingSchedulerConfig {
+
+    /**
+     * Runs blocking tasks on virtual threads. Both the number of threads and the number of
+     * waiting tasks are capped, tasks beyond both caps are rejected instead of piling up.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler blockingScheduler(BlockingTaskProperties properties) {
+        return Schedulers.newBoundedElastic(
+                properties.getThreadCap(),
+                properties.getQueuedTaskCap(),
+                Thread.ofVirtual().name("blocking-", 0).factory(),
+                (int) properties.getIdleTimeout().toSeconds());
+    }
+}
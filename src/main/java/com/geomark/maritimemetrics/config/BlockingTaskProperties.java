@@ -0,0 +1,29 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the scheduler for blocking work (prefix {@code maritime.blocking}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.blocking")
+public class BlockingTaskProperties {
+
+    /**
+     * Maximum number of virtual threads running blocking work at the same time.
+     */
+    private int threadCap = 256;
+
+    /**
+     * Maximum number of blocking tasks waiting for a thread; further tasks are rejected.
+     */
+    private int queuedTaskCap = 10_000;
+
+    /**
+     * Time after which an idle thread is released.
+     */
+    private Duration idleTimeout = Duration.ofSeconds(60);
+}
@@ -0,0 +1,24 @@
+package com.geomark.maritimemetrics.config;
+
+import com.datastax.oss.driver.api.core.config.DefaultDriverOption;
+import org.springframework.boot.autoconfigure.cassandra.DriverConfigLoaderBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Customizes the Cassandra driver configuration.
+ */
+@Configuration
+public class CassandraDriverConfig {
+
+    /**
+     * Enables the per node in-flight request metric, which the write governor reads
+     * to detect saturated connection pools.
+     */
+    @Bean
+    public DriverConfigLoaderBuilderCustomizer inFlightMetricCustomizer() {
+        return builder -> builder.withStringList(DefaultDriverOption.METRICS_NODE_ENABLED, List.of("pool.in-flight"));
+    }
+}
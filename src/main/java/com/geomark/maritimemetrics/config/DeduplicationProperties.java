@@ -0,0 +1,43 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the duplicate point filter (prefix {@code maritime.ingest.dedup}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.ingest.dedup")
+public class DeduplicationProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Number of points per vessel each bloom filter is initially sized for; filters of
+     * vessels with more points are rebuilt with twice their capacity.
+     */
+    private long expectedPointsPerVessel = 100_000;
+
+    /**
+     * Target false positive rate of the bloom filters. Positives are confirmed with a read
+     * before a point is skipped, so a higher rate only costs reads, never new points.
+     */
+    private double falsePositiveRate = 0.001;
+
+    /**
+     * Number of points checked together. The positives of each vessel in a batch are
+     * confirmed with a single read.
+     */
+    private int batchSize = 200;
+
+    /**
+     * Maximum number of batches checked at the same time.
+     */
+    private int concurrency = 4;
+
+    /**
+     * Maximum number of vessels whose filters are kept in memory; the least recently
+     * used filter is dropped and rebuilt from Cassandra when needed again.
+     */
+    private int maxTrackedVessels = 200;
+}
@@ -0,0 +1,45 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the distributed ingest (prefix {@code maritime.ingest.distributed}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.ingest.distributed")
+public class DistributedIngestProperties {
+
+    /**
+     * When enabled, uploads are split into work units that any instance can process.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The coordination store: {@code cassandra}, or {@code memory} for single node runs and tests.
+     */
+    private String coordinator = "cassandra";
+
+    /**
+     * Number of vessel hash work units an upload is split into.
+     */
+    private int unitsPerJob = 16;
+
+    /**
+     * Number of units one instance processes at the same time.
+     */
+    private int maxActiveUnits = 2;
+
+    private Duration lease = Duration.ofMinutes(2);
+
+    private Duration leaseRenewInterval = Duration.ofSeconds(30);
+
+    private Duration pollInterval = Duration.ofSeconds(5);
+
+    /**
+     * Number of attempts after which a unit is marked as failed.
+     */
+    private int maxAttempts = 3;
+}
@@ -0,0 +1,42 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the bulk exports (prefix {@code maritime.export}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.export")
+public class ExportProperties {
+
+    /**
+     * Directory the export files and their checkpoints are written to.
+     */
+    private String directory = "exports";
+
+    /**
+     * Number of token ranges the ring is split into. Ranges are the unit of parallelism and of resume.
+     */
+    private int splits = 256;
+
+    /**
+     * Maximum number of token ranges scanned at the same time.
+     */
+    private int concurrency = 8;
+
+    /**
+     * Page size of the range scans.
+     */
+    private int pageSize = 5000;
+
+    /**
+     * Number of rows per block of the columnar format.
+     */
+    private int columnarBlockRows = 8192;
+
+    /**
+     * Number of finished exports kept in memory. Older ones are still reported from their files.
+     */
+    private int retainedExports = 100;
+}
@@ -0,0 +1,29 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the ingest job tracking (prefix {@code maritime.ingest.jobs}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.ingest.jobs")
+public class IngestJobProperties {
+
+    /**
+     * Minimum interval between two progress events of a job on the STOMP broker.
+     */
+    private Duration progressInterval = Duration.ofSeconds(1);
+
+    /**
+     * Number of finished jobs kept for the status endpoint.
+     */
+    private int retainedJobs = 100;
+
+    /**
+     * Number of error messages kept per job.
+     */
+    private int errorSamples = 20;
+}
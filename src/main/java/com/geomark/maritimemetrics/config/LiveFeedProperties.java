@@ -0,0 +1,31 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the live vessel feed (prefix {@code maritime.live-feed}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.live-feed")
+public class LiveFeedProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Interval at which pending updates are sent to the subscribers.
+     */
+    private Duration tick = Duration.ofMillis(500);
+
+    /**
+     * Maximum number of vessel updates in one message; the rest is sent on the next ticks.
+     */
+    private int maxUpdatesPerMessage = 500;
+
+    /**
+     * Time after which a message that was never confirmed as handled no longer blocks its subscriber.
+     */
+    private Duration stallTimeout = Duration.ofSeconds(30);
+}
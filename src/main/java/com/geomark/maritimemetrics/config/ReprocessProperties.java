@@ -0,0 +1,27 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration of the reprocessing jobs (prefix {@code maritime.reprocess}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.reprocess")
+public class ReprocessProperties {
+
+    /**
+     * Number of vessel partitions reprocessed at the same time.
+     */
+    private int vesselConcurrency = 8;
+
+    /**
+     * Number of points read, recomputed and checkpointed at once.
+     */
+    private int pageSize = 1000;
+
+    /**
+     * Maximum number of points read per second over all vessels, 0 for no limit.
+     */
+    private int maxPointsPerSecond = 20000;
+}
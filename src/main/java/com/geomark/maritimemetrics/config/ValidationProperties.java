@@ -0,0 +1,43 @@
+package com.geomark.maritimemetrics.config;
+
+import com.geomark.maritimemetrics.model.ValidationRule;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Configuration of the validation rules (prefix {@code maritime.validation}).
+ * The values are read once at startup and compiled into the validation service.
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.validation")
+public class ValidationProperties {
+
+    /**
+     * The rules that are evaluated. Rules not listed here never fire.
+     */
+    private Set<ValidationRule> enabledRules = EnumSet.allOf(ValidationRule.class);
+
+    private double latitudeMin = -90;
+    private double latitudeMax = 90;
+
+    private double longitudeMin = -180;
+    private double longitudeMax = 180;
+
+    /**
+     * Envelope applied to both the actual and the proposed speed.
+     */
+    private double speedMin = 0;
+    private double speedMax = 60;
+
+    private double rpmMin = 0;
+    private double rpmMax = 25000;
+
+    /**
+     * Maximum speed (km/h) implied by the distance to the previous point of the same vessel
+     * before the point is flagged as a teleport.
+     */
+    private double maxImpliedSpeedKmh = 150;
+}
@@ -0,0 +1,44 @@
+package com.geomark.maritimemetrics.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the adaptive write governor (prefix {@code maritime.ingest.write-governor}).
+ */
+@Data
+@ConfigurationProperties(prefix = "maritime.ingest.write-governor")
+public class WriteGovernorProperties {
+
+    private int minConcurrency = 2;
+    private int maxConcurrency = 256;
+    private int initialConcurrency = 16;
+
+    private int minBatchSize = 1;
+    private int maxBatchSize = 50;
+    private int initialBatchSize = 10;
+
+    /**
+     * Average write latency above which the concurrency limit is decreased.
+     */
+    private Duration targetLatency = Duration.ofMillis(50);
+
+    /**
+     * Number of permits added per healthy adjustment interval.
+     */
+    private int additiveIncrease = 2;
+
+    /**
+     * Factor applied to the concurrency limit when the cluster shows signs of overload.
+     */
+    private double multiplicativeDecrease = 0.5;
+
+    /**
+     * Total number of in-flight driver requests above which the limit is decreased.
+     */
+    private int maxDriverInFlight = 1024;
+
+    private Duration adjustInterval = Duration.ofSeconds(1);
+}
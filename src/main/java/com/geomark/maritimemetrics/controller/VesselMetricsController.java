@@ -1,9 +1,17 @@
 package com.geomark.maritimemetrics.controller;
 
 import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ExportProgress;
+import com.geomark.maritimemetrics.model.ExportRequest;
 import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.IngestProgress;
+import com.geomark.maritimemetrics.model.ReprocessJob;
 import com.geomark.maritimemetrics.model.SpeedDifference;
+import com.geomark.maritimemetrics.model.ValidationRule;
+import com.geomark.maritimemetrics.model.VesselAnalytics;
+import com.geomark.maritimemetrics.model.VesselBatchQuery;
 import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsGroup;
 import com.geomark.maritimemetrics.service.VesselMetricsService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
@@ -18,11 +26,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import java.io.IOException;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import static org.springframework.web.bind.annotation.RequestMethod.POST;
 
@@ -46,18 +55,38 @@ public class VesselMetricsController {
 
     @Operation(tags = "Task 0 (Initial ingest) ", summary = "Ingests a CSV file containing vessel metrics.")
     @PostMapping(value = "/ingest", consumes = {MediaType.MULTIPART_FORM_DATA_VALUE})
-    public Mono<Void> ingestMetrics(@RequestPart MultipartFile file) throws IOException {
-        metricsService.processAndSaveMetrics(file);
-        return Mono.empty();
+    public Mono<IngestProgress> ingestMetrics(@RequestPart MultipartFile file) {
+        return metricsService.processAndSaveMetrics(file);
+    }
+
+
+    @Operation(tags = "Ingest jobs", summary = "Returns the progress of the ingest jobs of this instance.")
+    @GetMapping("/ingest/jobs")
+    public Flux<IngestProgress> getIngestJobs() {
+        return metricsService.getIngestJobs();
+    }
+
+
+    @Operation(tags = "Ingest jobs", summary = "Returns the progress, throughput, ETA and errors of an ingest job.")
+    @GetMapping("/ingest/jobs/{jobId}")
+    public Mono<IngestProgress> getIngestJob(@PathVariable UUID jobId) {
+        return metricsService.getIngestJob(jobId);
+    }
+
+
+    @Operation(tags = "Ingest jobs", summary = "Cancels a running ingest job.")
+    @PostMapping("/ingest/jobs/{jobId}/cancel")
+    public Mono<IngestProgress> cancelIngestJob(@PathVariable UUID jobId) {
+        return metricsService.cancelIngestJob(jobId);
     }
 
 
     @Operation(tags = "Task 1", summary = "Returns a list of speed differences for a given vessel.")
     @GetMapping("/{vesselId}/speed-differences")
-    public Slice<SpeedDifference> getSpeedDifferences(@PathVariable String vesselId,
-                                                      @RequestParam(required = false) int pageNo,
-                                                      @RequestParam(required = false) int pageSize,
-                                                      @RequestParam(required = false) Sort.Direction sortBy) {
+    public Mono<Slice<SpeedDifference>> getSpeedDifferences(@PathVariable String vesselId,
+                                                            @RequestParam(required = false) int pageNo,
+                                                            @RequestParam(required = false) int pageSize,
+                                                            @RequestParam(required = false) Sort.Direction sortBy) {
         return metricsService.getSpeedDifferences(vesselId, pageNo, pageSize, sortBy);
     }
 
@@ -86,6 +115,62 @@ public class VesselMetricsController {
     }
 
 
+    @Operation(tags = "Batch", summary = "Streams the metrics of several vessels for a time range, grouped per vessel.")
+    @PostMapping(value = "/vessel-metrics/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<VesselMetricsGroup> getGroupedVesselMetrics(@RequestBody VesselBatchQuery query) {
+        return metricsService.getGroupedVesselMetrics(query.vesselIds(), utc(query.from()), utc(query.to()));
+    }
+
+
+    @Operation(tags = "Batch", summary = "Streams the metrics of several vessels for a time range as one stream ordered by timestamp.")
+    @PostMapping(value = "/vessel-metrics/batch/merged", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<VesselMetrics> getMergedVesselMetrics(@RequestBody VesselBatchQuery query) {
+        return metricsService.getMergedVesselMetrics(query.vesselIds(), utc(query.from()), utc(query.to()));
+    }
+
+
+    @Operation(tags = "Export", summary = "Starts a parallel bulk export of the vessel metrics to a gzip CSV or columnar file.")
+    @PostMapping("/vessel-metrics/export")
+    public Mono<ExportProgress> startExport(@RequestBody ExportRequest request) {
+        return metricsService.startExport(request);
+    }
+
+
+    @Operation(tags = "Export", summary = "Returns the progress of a bulk export.")
+    @GetMapping("/vessel-metrics/export/{exportId}")
+    public Mono<ExportProgress> getExportProgress(@PathVariable String exportId) {
+        return metricsService.getExportProgress(exportId);
+    }
+
+
+    @Operation(tags = "Export", summary = "Resumes an interrupted bulk export with the token ranges not written yet.")
+    @PostMapping("/vessel-metrics/export/{exportId}/resume")
+    public Mono<ExportProgress> resumeExport(@PathVariable String exportId) {
+        return metricsService.resumeExport(exportId);
+    }
+
+
+    @Operation(tags = "Reprocessing", summary = "Starts recomputing the derived metrics and the validity of all stored points.")
+    @PostMapping("/reprocess")
+    public Mono<ReprocessJob> startReprocessing() {
+        return metricsService.startReprocessing();
+    }
+
+
+    @Operation(tags = "Reprocessing", summary = "Returns the progress of a reprocessing job.")
+    @GetMapping("/reprocess/{jobId}")
+    public Mono<ReprocessJob> getReprocessingJob(@PathVariable UUID jobId) {
+        return metricsService.getReprocessingJob(jobId);
+    }
+
+
+    @Operation(tags = "Reprocessing", summary = "Resumes an interrupted reprocessing job after its last checkpoints.")
+    @PostMapping("/reprocess/{jobId}/resume")
+    public Mono<ReprocessJob> resumeReprocessing(@PathVariable UUID jobId) {
+        return metricsService.resumeReprocessing(jobId);
+    }
+
+
     @Operation(tags = "Task 5", summary = " Returns a Map of grouped data quality issues for a given vessel.")
     @GetMapping("/{vesselId}/grouped-by-data-issues")
     public Mono<Map<DataQualityIssue, List<VesselMetrics>>> groupProblematicRecords(@PathVariable String vesselId,
@@ -93,4 +178,28 @@ public class VesselMetricsController {
         return metricsService.groupVesselMetricsByDataQualityIssue(vesselId, issue);
     }
 
-}
\ No newline at end of file
+
+    @Operation(tags = "Analytics", summary = "Returns fuel efficiency and speed distribution analytics for a given vessel and range of days.")
+    @GetMapping("/{vesselId}/analytics")
+    public Mono<VesselAnalytics> getVesselAnalytics(@PathVariable String vesselId,
+                                                    @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+                                                    @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to) {
+        return metricsService.getVesselAnalytics(vesselId, from, to);
+    }
+
+
+    @Operation(tags = "Validation", summary = "Returns the number of points flagged by each validation rule since startup.")
+    @GetMapping("/validation-rule-hits")
+    public Mono<Map<ValidationRule, Long>> getValidationRuleHits() {
+        return metricsService.getValidationRuleHits();
+    }
+
+
+    /**
+     * Converts a request time to an instant, keeping a missing time for the service to reject.
+     */
+    private static Instant utc(LocalDateTime time) {
+        return time == null ? null : time.toInstant(java.time.ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ * This record represents the progress of a distributed ingest, combined over its work units.
+ *
+ * @param units             the number of units of the job
+ * @param finishedUnits     the number of units that are done, failed or cancelled
+ * @param failedUnits       the number of units that failed
+ * @param validRecords      the number of valid points of the units that are done
+ * @param ingestionErrors   the number of failed rows of the units that are done
+ * @param duplicatesSkipped the number of skipped duplicates of the units that are done
+ */
+public record DistributedJobProgress(int units,
+                                     int finishedUnits,
+                                     int failedUnits,
+                                     long validRecords,
+                                     long ingestionErrors,
+                                     long duplicatesSkipped) {
+
+    public boolean isFinished() {
+        return finishedUnits == units;
+    }
+}
@@ -0,0 +1,25 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ * This enum represents the file formats of a bulk export.
+ */
+public enum ExportFormat {
+    /**
+     * Gzip compressed CSV with a header line.
+     */
+    CSV_GZIP("csv.gz"),
+    /**
+     * Gzip compressed column blocks, see {@link com.geomark.maritimemetrics.util.ColumnarExportWriter}.
+     */
+    COLUMNAR("mmc.gz");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,25 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ * This record represents the progress of a bulk export.
+ *
+ * @param exportId      the ID of the export
+ * @param format        the file format
+ * @param state         RUNNING, COMPLETED, FAILED or INTERRUPTED (resumable)
+ * @param rangesTotal   the number of token ranges of the export
+ * @param rangesDone    the number of token ranges written
+ * @param rows          the number of rows written by this run
+ * @param bytes         the number of compressed bytes written by this run
+ * @param rowsPerSecond the average throughput of this run
+ * @param file          the path of the export file once completed
+ */
+public record ExportProgress(String exportId,
+                             ExportFormat format,
+                             String state,
+                             int rangesTotal,
+                             int rangesDone,
+                             long rows,
+                             long bytes,
+                             long rowsPerSecond,
+                             String file) {
+}
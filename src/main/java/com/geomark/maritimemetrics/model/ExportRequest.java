@@ -0,0 +1,17 @@
+package com.geomark.maritimemetrics.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * This record represents a request for a bulk export of the vessel metrics.
+ *
+ * @param format the file format, CSV_GZIP if omitted
+ * @param from   the start of the time slice (UTC), or null for the whole table
+ * @param to     the end of the time slice (UTC), or null for the whole table
+ */
+public record ExportRequest(ExportFormat format,
+                            @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss.SSS") LocalDateTime from,
+                            @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss.SSS") LocalDateTime to) {
+}
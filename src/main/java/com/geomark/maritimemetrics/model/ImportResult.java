@@ -1,12 +1,27 @@
 package com.geomark.maritimemetrics.model;
 
-import java.util.List;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 public record ImportResult(AtomicLong totalTimeElapsed,
                            AtomicLong validRecords,
                            AtomicLong ingestionErrors,
-                           List<String> errorMessages) {
+                           AtomicLong duplicatesSkipped,
+                           ErrorCapture errors) {
+
+    /**
+     * Creates a result from plain counter values.
+     *
+     * @param startMillis the epoch millis at which the ingest started
+     */
+    public static ImportResult of(long startMillis, long validRecords, long ingestionErrors, long duplicatesSkipped) {
+        return new ImportResult(new AtomicLong(startMillis),
+                new AtomicLong(validRecords),
+                new AtomicLong(ingestionErrors),
+                new AtomicLong(duplicatesSkipped),
+                new ErrorCapture());
+    }
 
     @Override
     public AtomicLong totalTimeElapsed(){
@@ -0,0 +1,20 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ * This enum represents the states of an ingest job.
+ */
+public enum IngestJobState {
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED,
+    /**
+     * The upload was split into work units that the instances of the cluster are processing.
+     * The job finishes once all of its units are finished.
+     */
+    DISTRIBUTED;
+
+    public boolean isFinished() {
+        return this != RUNNING && this != DISTRIBUTED;
+    }
+}
@@ -0,0 +1,28 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class represents a distributed ingest job that still has unfinished units (Cassandra Table).
+ * All open jobs live in a single small partition that every instance polls.
+ */
+@Data
+@Table("ingest_open_jobs")
+@ToString
+public class IngestOpenJob {
+    @PrimaryKeyColumn(name = "state", type = PrimaryKeyType.PARTITIONED)
+    private String state;
+
+    @PrimaryKeyColumn(name = "job_id", type = PrimaryKeyType.CLUSTERED)
+    private UUID jobId;
+
+    private Integer units;
+    private Instant createdAt;
+}
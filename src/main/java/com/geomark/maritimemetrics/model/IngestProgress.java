@@ -0,0 +1,50 @@
+package com.geomark.maritimemetrics.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * This record represents the progress of an ingest job.
+ *
+ * @param jobId             the ID of the job
+ * @param name              the name of the uploaded file or work unit
+ * @param state             the state of the job
+ * @param startedAt         the start of the job
+ * @param elapsedMillis     the time elapsed since the start, or the duration of a finished job
+ * @param bytesTotal        the size of the input
+ * @param bytesProcessed    the number of input bytes read
+ * @param rowsRead          the number of CSV rows parsed
+ * @param rowsWritten       the number of points written
+ * @param duplicatesSkipped the number of points skipped as already ingested
+ * @param errors            the number of rows that failed
+ * @param rowsPerSecond     the average write throughput
+ * @param bytesPerSecond    the average read throughput
+ * @param etaSeconds        the estimated time until the input is read, or null if unknown
+ * @param backlog           the number of points waiting in each stage of the pipeline
+ * @param errorCounts       the number of failed rows per error class
+ * @param errorSamples      a sample of the error messages
+ * @param unitsTotal        the number of work units of a distributed job, or 0
+ * @param unitsFinished     the number of finished work units of a distributed job
+ */
+public record IngestProgress(UUID jobId,
+                             String name,
+                             IngestJobState state,
+                             Instant startedAt,
+                             long elapsedMillis,
+                             long bytesTotal,
+                             long bytesProcessed,
+                             long rowsRead,
+                             long rowsWritten,
+                             long duplicatesSkipped,
+                             long errors,
+                             long rowsPerSecond,
+                             long bytesPerSecond,
+                             Long etaSeconds,
+                             Map<String, Long> backlog,
+                             Map<String, Long> errorCounts,
+                             List<String> errorSamples,
+                             int unitsTotal,
+                             int unitsFinished) {
+}
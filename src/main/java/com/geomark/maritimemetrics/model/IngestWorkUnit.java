@@ -0,0 +1,36 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class represents a work unit of a distributed ingest (Cassandra Table).
+ * Units are claimed and released with lightweight transactions only.
+ */
+@Data
+@Table("ingest_work_units")
+@ToString(exclude = "payload")
+public class IngestWorkUnit {
+    @PrimaryKeyColumn(name = "job_id", type = PrimaryKeyType.PARTITIONED)
+    private UUID jobId;
+
+    @PrimaryKeyColumn(name = "unit", type = PrimaryKeyType.CLUSTERED)
+    private Integer unit;
+
+    private String status;
+    private String owner;
+    private Instant leaseExpires;
+    private Integer attempts;
+    private ByteBuffer payload;
+
+    private Long validRecords;
+    private Long ingestionErrors;
+    private Long duplicatesSkipped;
+}
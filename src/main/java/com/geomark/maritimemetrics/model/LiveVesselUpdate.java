@@ -0,0 +1,36 @@
+package com.geomark.maritimemetrics.model;
+
+import java.time.Instant;
+
+/**
+ * This record represents the latest known state of a vessel on the live feed.
+ *
+ * @param vesselId        the ID of the vessel
+ * @param timestamp       the timestamp of the point
+ * @param latitude        the latitude of the vessel
+ * @param longitude       the longitude of the vessel
+ * @param actualSpeed     the actual speed over ground
+ * @param proposedSpeed   the proposed speed over ground
+ * @param fuelConsumption the fuel consumption
+ * @param isvalid         whether the point passed validation
+ */
+public record LiveVesselUpdate(String vesselId,
+                               Instant timestamp,
+                               Double latitude,
+                               Double longitude,
+                               Double actualSpeed,
+                               Double proposedSpeed,
+                               Double fuelConsumption,
+                               Boolean isvalid) {
+
+    public static LiveVesselUpdate of(VesselMetrics metric) {
+        return new LiveVesselUpdate(metric.getKey().getVesselId(),
+                metric.getKey().getTimestamp(),
+                metric.getLatitude(),
+                metric.getLongitude(),
+                metric.getActualSpeed(),
+                metric.getProposedSpeed(),
+                metric.getFuelConsumption(),
+                metric.getIsvalid());
+    }
+}
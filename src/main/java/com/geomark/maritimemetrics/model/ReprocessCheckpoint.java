@@ -0,0 +1,30 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class represents the progress of a reprocessing job within one vessel partition (Cassandra Table).
+ * It is written after every page, so a resumed job continues after the last checkpointed point.
+ */
+@Data
+@Table("reprocess_checkpoints")
+@ToString
+public class ReprocessCheckpoint {
+    @PrimaryKeyColumn(name = "job_id", type = PrimaryKeyType.PARTITIONED)
+    private UUID jobId;
+
+    @PrimaryKeyColumn(name = "vessel_id", type = PrimaryKeyType.CLUSTERED)
+    private String vesselId;
+
+    private Instant lastTimestamp;
+    private Boolean done;
+    private Long pointsScanned;
+    private Long pointsChanged;
+}
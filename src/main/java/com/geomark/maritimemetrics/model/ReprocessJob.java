@@ -0,0 +1,28 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * This class represents a reprocessing job and its progress (Cassandra Table).
+ */
+@Data
+@Table("reprocess_jobs")
+@ToString
+public class ReprocessJob {
+    @PrimaryKey("job_id")
+    private UUID jobId;
+
+    private String state;
+    private Instant startedAt;
+    private Instant updatedAt;
+
+    private Long vesselsDone;
+    private Long pointsScanned;
+    private Long pointsChanged;
+}
@@ -0,0 +1,33 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ *  This enum represents the individual validation rules applied to every vessel point.
+ *  Each rule owns one bit of the issue mask produced by the validation service and
+ *  reports a {@link DataQualityIssue} category when it fires.
+ */
+public enum ValidationRule {
+    MISSING_FIELDS(DataQualityIssue.MISSING_DATA),
+    NEGATIVE_SPEED(DataQualityIssue.INVALID_DATA),
+    NEGATIVE_FUEL(DataQualityIssue.INVALID_DATA),
+    NEGATIVE_RPM(DataQualityIssue.INVALID_DATA),
+    LATITUDE_BOUNDS(DataQualityIssue.OUT_OF_BOUNDS),
+    LONGITUDE_BOUNDS(DataQualityIssue.OUT_OF_BOUNDS),
+    SPEED_ENVELOPE(DataQualityIssue.OUT_OF_BOUNDS),
+    RPM_ENVELOPE(DataQualityIssue.OUT_OF_BOUNDS),
+    TELEPORT(DataQualityIssue.INVALID_DATA),
+    TIMESTAMP_ORDER(DataQualityIssue.INVALID_DATA);
+
+    private final DataQualityIssue issue;
+
+    ValidationRule(DataQualityIssue issue) {
+        this.issue = issue;
+    }
+
+    public DataQualityIssue getIssue() {
+        return issue;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,53 @@
+package com.geomark.maritimemetrics.model;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * This record represents the fuel efficiency and speed distribution of a vessel over a range of days.
+ *
+ * @param vesselId             the ID of the vessel
+ * @param from                 the first day of the range
+ * @param to                   the last day of the range
+ * @param points               the number of valid points in the range
+ * @param distanceNm           the distance covered, in nautical miles
+ * @param fuelConsumed         the sum of the fuel consumption reported by the points
+ * @param fuelPerNauticalMile  the fuel consumed per nautical mile, or null without distance
+ * @param speedBandSeconds     the seconds spent in each speed band
+ * @param speedDeviationP50    the median speed deviation (actual - proposed)
+ * @param speedDeviationP95    the 95th percentile of the speed deviation
+ * @param speedDeviationP99    the 99th percentile of the speed deviation
+ */
+public record VesselAnalytics(String vesselId,
+                              LocalDate from,
+                              LocalDate to,
+                              long points,
+                              double distanceNm,
+                              double fuelConsumed,
+                              Double fuelPerNauticalMile,
+                              Map<String, Long> speedBandSeconds,
+                              Double speedDeviationP50,
+                              Double speedDeviationP95,
+                              Double speedDeviationP99) {
+
+    /**
+     * Creates the analytics of a vessel from its merged sketch.
+     */
+    public static VesselAnalytics of(String vesselId, LocalDate from, LocalDate to, VesselDaySketch sketch) {
+        double distance = sketch.getDistanceNm();
+        return new VesselAnalytics(vesselId, from, to,
+                sketch.getPoints(),
+                distance,
+                sketch.getFuel(),
+                distance > 0 ? sketch.getFuel() / distance : null,
+                sketch.getSpeedBandSeconds(),
+                quantile(sketch, 0.50),
+                quantile(sketch, 0.95),
+                quantile(sketch, 0.99));
+    }
+
+    private static Double quantile(VesselDaySketch sketch, double q) {
+        double value = sketch.speedDeviationQuantile(q);
+        return Double.isNaN(value) ? null : value;
+    }
+}
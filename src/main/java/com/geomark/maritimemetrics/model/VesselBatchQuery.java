@@ -0,0 +1,18 @@
+package com.geomark.maritimemetrics.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * This record represents a request for the metrics of several vessels over the same time range.
+ *
+ * @param vesselIds the IDs of the vessels
+ * @param from      the start of the time range (UTC)
+ * @param to        the end of the time range (UTC)
+ */
+public record VesselBatchQuery(List<String> vesselIds,
+                               @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss.SSS") LocalDateTime from,
+                               @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss.SSS") LocalDateTime to) {
+}
@@ -0,0 +1,221 @@
+package com.geomark.maritimemetrics.model;
+
+import com.geomark.maritimemetrics.util.GeoUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class is a fixed memory, mergeable sketch of one vessel's activity over one or more days.
+ * It keeps fuel and distance totals, the time spent in each speed band and a fixed bucket
+ * histogram of the speed deviation (actual - proposed speed). Merging two sketches adds their
+ * counters, so a sketch of any time range is the sum of the daily sketches it covers.
+ * The bucket layout is part of the stored data and must not change.
+ */
+public class VesselDaySketch {
+
+    /**
+     * The components of a sketch, as stored in the vessel_sketch_counters table.
+     */
+    public enum Component {
+        POINTS,
+        FUEL_MILLI,
+        DISTANCE_METERS,
+        SPEED_BAND_SECONDS,
+        SPEED_DEVIATION
+    }
+
+    /**
+     * Upper bounds of the speed bands; the last band is open ended.
+     */
+    public static final double[] SPEED_BAND_UPPER_BOUNDS = {1, 5, 10, 15, 20, 25};
+
+    public static final double DEVIATION_MIN = -25;
+
+    public static final double DEVIATION_BUCKET_WIDTH = 0.25;
+
+    public static final int DEVIATION_BUCKETS = 200;
+
+    private long points;
+
+    private long fuelMilli;
+
+    private long distanceMeters;
+
+    private final long[] speedBandSeconds = new long[SPEED_BAND_UPPER_BOUNDS.length + 1];
+
+    private final long[] speedDeviation = new long[DEVIATION_BUCKETS];
+
+    /**
+     * Records a single valid point.
+     *
+     * @param deviation the speed deviation of the point, NaN if unknown
+     * @param fuel      the fuel consumption reported with the point, or null
+     */
+    public void recordPoint(double deviation, Double fuel) {
+        points++;
+        if (fuel != null) {
+            fuelMilli += Math.round(fuel * 1000);
+        }
+        if (deviation == deviation) {
+            int bucket = (int) Math.floor((deviation - DEVIATION_MIN) / DEVIATION_BUCKET_WIDTH);
+            speedDeviation[Math.max(0, Math.min(DEVIATION_BUCKETS - 1, bucket))]++;
+        }
+    }
+
+    /**
+     * Records the leg between two consecutive points.
+     *
+     * @param distanceKm the distance covered
+     * @param seconds    the time elapsed
+     * @param speed      the speed over the leg
+     */
+    public void recordLeg(double distanceKm, long seconds, double speed) {
+        distanceMeters += Math.round(distanceKm * 1000);
+        speedBandSeconds[speedBand(speed)] += seconds;
+    }
+
+    /**
+     * Adds a stored counter to this sketch.
+     *
+     * @param component the sketch component
+     * @param bucket    the bucket within the component
+     * @param value     the counter value
+     */
+    public void add(Component component, int bucket, long value) {
+        switch (component) {
+            case POINTS -> points += value;
+            case FUEL_MILLI -> fuelMilli += value;
+            case DISTANCE_METERS -> distanceMeters += value;
+            case SPEED_BAND_SECONDS -> speedBandSeconds[bucket] += value;
+            case SPEED_DEVIATION -> speedDeviation[bucket] += value;
+        }
+    }
+
+    /**
+     * Adds the counters of another sketch to this sketch.
+     *
+     * @param other the sketch to merge
+     * @return this sketch
+     */
+    public VesselDaySketch merge(VesselDaySketch other) {
+        other.forEachCounter(this::add);
+        return this;
+    }
+
+    /**
+     * Subtracts the counters of another sketch from this sketch, e.g. to take the old
+     * contribution of a corrected point out of the stored counters.
+     *
+     * @param other the sketch to subtract
+     * @return this sketch
+     */
+    public VesselDaySketch subtract(VesselDaySketch other) {
+        other.forEachCounter((component, bucket, value) -> add(component, bucket, -value));
+        return this;
+    }
+
+    /**
+     * Calls the consumer for every non-zero counter of this sketch.
+     *
+     * @param consumer the counter consumer
+     */
+    public void forEachCounter(CounterConsumer consumer) {
+        if (points != 0) {
+            consumer.accept(Component.POINTS, 0, points);
+        }
+        if (fuelMilli != 0) {
+            consumer.accept(Component.FUEL_MILLI, 0, fuelMilli);
+        }
+        if (distanceMeters != 0) {
+            consumer.accept(Component.DISTANCE_METERS, 0, distanceMeters);
+        }
+        for (int i = 0; i < speedBandSeconds.length; i++) {
+            if (speedBandSeconds[i] != 0) {
+                consumer.accept(Component.SPEED_BAND_SECONDS, i, speedBandSeconds[i]);
+            }
+        }
+        for (int i = 0; i < speedDeviation.length; i++) {
+            if (speedDeviation[i] != 0) {
+                consumer.accept(Component.SPEED_DEVIATION, i, speedDeviation[i]);
+            }
+        }
+    }
+
+    public long getPoints() {
+        return points;
+    }
+
+    public double getFuel() {
+        return fuelMilli / 1000.0;
+    }
+
+    public double getDistanceNm() {
+        return distanceMeters / 1000.0 / GeoUtils.KM_PER_NAUTICAL_MILE;
+    }
+
+    /**
+     * Returns the seconds spent in each speed band, keyed by the band label (e.g. "5-10").
+     */
+    public Map<String, Long> getSpeedBandSeconds() {
+        Map<String, Long> bands = new LinkedHashMap<>();
+        double lower = 0;
+        for (int i = 0; i < speedBandSeconds.length; i++) {
+            String label = i < SPEED_BAND_UPPER_BOUNDS.length
+                    ? format(lower) + "-" + format(SPEED_BAND_UPPER_BOUNDS[i])
+                    : format(lower) + "+";
+            bands.put(label, speedBandSeconds[i]);
+            if (i < SPEED_BAND_UPPER_BOUNDS.length) {
+                lower = SPEED_BAND_UPPER_BOUNDS[i];
+            }
+        }
+        return bands;
+    }
+
+    /**
+     * Estimates a quantile of the speed deviation from the histogram, as the midpoint
+     * of the bucket holding the quantile.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the estimated deviation, or NaN if no deviation was recorded
+     */
+    public double speedDeviationQuantile(double q) {
+        long total = 0;
+        for (long count : speedDeviation) {
+            total += count;
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < speedDeviation.length; i++) {
+            seen += speedDeviation[i];
+            if (seen >= Math.max(1, rank)) {
+                return DEVIATION_MIN + (i + 0.5) * DEVIATION_BUCKET_WIDTH;
+            }
+        }
+        return DEVIATION_MIN + (DEVIATION_BUCKETS - 0.5) * DEVIATION_BUCKET_WIDTH;
+    }
+
+    private static int speedBand(double speed) {
+        for (int i = 0; i < SPEED_BAND_UPPER_BOUNDS.length; i++) {
+            if (speed < SPEED_BAND_UPPER_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return SPEED_BAND_UPPER_BOUNDS.length;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    /**
+     * Consumer of the counters of a sketch.
+     */
+    @FunctionalInterface
+    public interface CounterConsumer {
+        void accept(Component component, int bucket, long value);
+    }
+}
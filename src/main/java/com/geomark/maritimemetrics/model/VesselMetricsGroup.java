@@ -0,0 +1,12 @@
+package com.geomark.maritimemetrics.model;
+
+import java.util.List;
+
+/**
+ * This record represents the metrics of one vessel within a batch query result.
+ *
+ * @param vesselId the ID of the vessel
+ * @param metrics  the metrics of the vessel
+ */
+public record VesselMetricsGroup(String vesselId, List<VesselMetrics> metrics) {
+}
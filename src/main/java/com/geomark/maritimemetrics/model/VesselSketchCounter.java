@@ -0,0 +1,22 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.Data;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.mapping.CassandraType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKey;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * This class represents one counter of a vessel's daily analytics sketch (Cassandra Table).
+ * Counters are only ever incremented, so sketches written by several ingests merge in place.
+ */
+@Data
+@Table("vessel_sketch_counters")
+@ToString
+public class VesselSketchCounter {
+    @PrimaryKey
+    private VesselSketchCounterKey key;
+
+    @CassandraType(type = CassandraType.Name.COUNTER)
+    private Long value;
+}
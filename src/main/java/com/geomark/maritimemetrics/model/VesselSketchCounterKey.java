@@ -0,0 +1,37 @@
+package com.geomark.maritimemetrics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyClass;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+
+/**
+ *  This class represents the primary key for the VesselSketchCounter table in Cassandra.
+ *  A vessel's partition holds one row per day, sketch component and bucket.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@PrimaryKeyClass
+@ToString
+public class VesselSketchCounterKey implements Serializable {
+    @PrimaryKeyColumn(name = "vessel_id", type = PrimaryKeyType.PARTITIONED)
+    private String vesselId;
+
+    @PrimaryKeyColumn(name = "day", ordinal = 0, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private LocalDate day;
+
+    @PrimaryKeyColumn(name = "component", ordinal = 1, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private String component;
+
+    @PrimaryKeyColumn(name = "bucket", ordinal = 2, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+    private Integer bucket;
+}
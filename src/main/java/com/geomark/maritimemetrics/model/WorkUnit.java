@@ -0,0 +1,14 @@
+package com.geomark.maritimemetrics.model;
+
+import java.util.UUID;
+
+/**
+ * This record represents a claimed unit of a distributed ingest.
+ *
+ * @param jobId    the ID of the ingest job
+ * @param unit     the number of the unit within the job
+ * @param payload  the gzip compressed CSV lines of the unit, including the header line
+ * @param attempts the number of earlier attempts to process the unit
+ */
+public record WorkUnit(UUID jobId, int unit, byte[] payload, int attempts) {
+}
@@ -0,0 +1,15 @@
+package com.geomark.maritimemetrics.model;
+
+/**
+ *  This enum represents the states of a distributed ingest work unit.
+ */
+public enum WorkUnitStatus {
+    PENDING,
+    CLAIMED,
+    DONE,
+    FAILED,
+    /**
+     * The job was cancelled before the unit was done.
+     */
+    CANCELLED
+}
@@ -5,9 +5,13 @@ import com.geomark.maritimemetrics.model.VesselMetrics;
 import com.geomark.maritimemetrics.model.VesselMetricsKey;
 import org.springframework.data.cassandra.repository.Query;
 import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 
@@ -19,6 +23,9 @@ public interface VesselMetricsReactiveRepository extends ReactiveCassandraReposi
     @Query("SELECT * FROM vessel_metrics WHERE vessel_id = ?0  AND isvalid = true ALLOW FILTERING")
     Flux<VesselMetrics> fetchValidByVesselId(String vesselId);
 
+    @Query("SELECT * FROM vessel_metrics WHERE vessel_id = ?0  AND isvalid = true ALLOW FILTERING")
+    Mono<Slice<VesselMetrics>> fetchValidByVesselId(String vesselId, Pageable pageable);
+
     @Query("SELECT * FROM vessel_metrics WHERE vessel_id = ?0  AND isvalid = false ALLOW FILTERING")
     Flux<VesselMetrics> fetchInvalidByVesselId(String vesselId);
 
@@ -28,6 +35,18 @@ public interface VesselMetricsReactiveRepository extends ReactiveCassandraReposi
     @Query("SELECT * FROM vessel_metrics WHERE vessel_id = ?0 AND timestamp >= ?1 AND timestamp <= ?2 AND isvalid = true ALLOW FILTERING")
     Flux<VesselMetrics> fetchByVesselIdAndTimestampBetween(String vesselId, Instant start, Instant end);
 
+    @Query("SELECT * FROM vessel_metrics WHERE vessel_id = ?0 LIMIT 1")
+    Mono<VesselMetrics> fetchLatestByVesselId(String vesselId);
+
+    @Query("SELECT vessel_id, timestamp FROM vessel_metrics WHERE vessel_id = ?0")
+    Flux<VesselMetrics> fetchKeysByVesselId(String vesselId);
+
+    @Query("SELECT vessel_id, timestamp FROM vessel_metrics WHERE vessel_id = ?0 AND timestamp > ?1")
+    Flux<VesselMetrics> fetchKeysByVesselIdAfter(String vesselId, Instant after);
+
+    @Query("SELECT vessel_id, timestamp FROM vessel_metrics WHERE vessel_id = ?0 AND timestamp IN ?1")
+    Flux<VesselMetrics> fetchKeysByVesselIdAndTimestampIn(String vesselId, List<Instant> timestamps);
+
     @Query("SELECT vessel_id, AVG(proposedspeed - actualspeed) AS compliance from maritime.vessel_metrics  WHERE isvalid = true  GROUP BY vessel_id ALLOW FILTERING;")
     Flux<Map<Double, Object>> fetchVehicleRankings();
 
@@ -0,0 +1,20 @@
+package com.geomark.maritimemetrics.repository;
+
+import com.geomark.maritimemetrics.model.VesselSketchCounter;
+import com.geomark.maritimemetrics.model.VesselSketchCounterKey;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.data.cassandra.repository.ReactiveCassandraRepository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+
+
+/**
+ * Reactive Repository interface for VesselSketchCounter.
+ */
+public interface VesselSketchCounterReactiveRepository extends ReactiveCassandraRepository<VesselSketchCounter, VesselSketchCounterKey> {
+
+    @Query("SELECT * FROM vessel_sketch_counters WHERE vessel_id = ?0 AND day >= ?1 AND day <= ?2")
+    Flux<VesselSketchCounter> fetchByVesselIdAndDayBetween(String vesselId, LocalDate from, LocalDate to);
+
+}
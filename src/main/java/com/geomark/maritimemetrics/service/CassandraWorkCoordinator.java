@@ -0,0 +1,237 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import com.geomark.maritimemetrics.model.WorkUnitStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.cql.ReactiveCqlOperations;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Work coordinator backed by the ingest_work_units and ingest_open_jobs Cassandra tables.
+ * Every state change of a unit is a lightweight transaction conditioned on the state the
+ * instance observed, so two instances can never hold the same unit at the same time.
+ */
+@Service
+@ConditionalOnProperty(name = "maritime.ingest.distributed.coordinator", havingValue = "cassandra", matchIfMissing = true)
+@Slf4j
+public class CassandraWorkCoordinator implements WorkCoordinator {
+
+    private static final String OPEN = "OPEN";
+
+    private final ReactiveCqlOperations cql;
+
+    public CassandraWorkCoordinator(ReactiveCassandraOperations cassandraOperations) {
+        this.cql = cassandraOperations.getReactiveCqlOperations();
+    }
+
+    @Override
+    public Mono<Void> publish(UUID jobId, Flux<byte[]> payloads) {
+        Mono<Long> units = payloads.index()
+                .concatMap(unit -> cql.execute(
+                        "INSERT INTO ingest_work_units (job_id, unit, status, attempts, payload) VALUES (?, ?, ?, ?, ?)",
+                        jobId, unit.getT1().intValue(), WorkUnitStatus.PENDING.name(), 0, ByteBuffer.wrap(unit.getT2())))
+                .count();
+
+        return units.flatMap(count -> cql.execute("INSERT INTO ingest_open_jobs (state, job_id, units, createdat) VALUES (?, ?, ?, ?)",
+                OPEN, jobId, count.intValue(), Instant.now())).then();
+    }
+
+    @Override
+    public Flux<UUID> openJobs() {
+        return cql.queryForRows("SELECT job_id FROM ingest_open_jobs WHERE state = ?", OPEN)
+                .map(row -> row.getUuid("job_id"));
+    }
+
+    @Override
+    public Mono<WorkUnit> claim(UUID jobId, String owner, Duration lease, int maxAttempts) {
+        Instant now = Instant.now();
+        return cql.queryForRows("SELECT unit, status, owner, leaseexpires, attempts FROM ingest_work_units WHERE job_id = ?", jobId)
+                .filter(row -> isClaimable(row, now))
+                .collectList()
+                .flatMapMany(candidates -> {
+                    // Instances start at different units to keep LWT contention low
+                    List<Row> shuffled = new ArrayList<>(candidates);
+                    Collections.shuffle(shuffled);
+                    return Flux.fromIterable(shuffled);
+                })
+                .concatMap(row -> tryClaim(jobId, row, owner, now.plus(lease), maxAttempts), 1)
+                .next()
+                .flatMap(unit -> cql.queryForRows("SELECT payload, attempts FROM ingest_work_units WHERE job_id = ? AND unit = ?", jobId, unit)
+                        .next()
+                        .map(row -> new WorkUnit(jobId, unit, toBytes(row.getByteBuffer("payload")), row.getInt("attempts"))));
+    }
+
+    @Override
+    public Mono<Boolean> renew(WorkUnit unit, String owner, Duration lease) {
+        return applied("UPDATE ingest_work_units SET leaseexpires = ? WHERE job_id = ? AND unit = ? IF owner = ? AND status = ?",
+                Instant.now().plus(lease), unit.jobId(), unit.unit(), owner, WorkUnitStatus.CLAIMED.name());
+    }
+
+    @Override
+    public Mono<Boolean> complete(WorkUnit unit, String owner, ImportResult result) {
+        return applied("UPDATE ingest_work_units SET status = ?, payload = null, validrecords = ?, ingestionerrors = ?, duplicatesskipped = ? "
+                        + "WHERE job_id = ? AND unit = ? IF owner = ? AND status = ?",
+                WorkUnitStatus.DONE.name(), result.validRecords().get(), result.ingestionErrors().get(), result.duplicatesSkipped().get(),
+                unit.jobId(), unit.unit(), owner, WorkUnitStatus.CLAIMED.name());
+    }
+
+    @Override
+    public Mono<Boolean> release(WorkUnit unit, String owner, int maxAttempts) {
+        int attempts = unit.attempts() + 1;
+        WorkUnitStatus status = attempts >= maxAttempts ? WorkUnitStatus.FAILED : WorkUnitStatus.PENDING;
+        return applied("UPDATE ingest_work_units SET status = ?, owner = null, leaseexpires = null, attempts = ? "
+                        + "WHERE job_id = ? AND unit = ? IF owner = ? AND status = ?",
+                status.name(), attempts, unit.jobId(), unit.unit(), owner, WorkUnitStatus.CLAIMED.name());
+    }
+
+    @Override
+    public Mono<WorkUnitStatus> status(WorkUnit unit) {
+        return cql.queryForRows("SELECT status FROM ingest_work_units WHERE job_id = ? AND unit = ?", unit.jobId(), unit.unit())
+                .next()
+                .map(row -> WorkUnitStatus.valueOf(row.getString("status")));
+    }
+
+    @Override
+    public Mono<Boolean> cancel(UUID jobId) {
+        return cql.queryForRows("SELECT job_id FROM ingest_open_jobs WHERE state = ? AND job_id = ?", OPEN, jobId)
+                .hasElements()
+                .filter(Boolean::booleanValue)
+                .flatMap(open -> cql.queryForRows("SELECT unit, status FROM ingest_work_units WHERE job_id = ?", jobId)
+                        .concatMap(row -> cancelUnit(jobId, row.getInt("unit"), row.getString("status")))
+                        .then(Mono.just(true)))
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<ImportResult> closeIfFinished(UUID jobId) {
+        Mono<Instant> createdAt = cql.queryForRows("SELECT createdat FROM ingest_open_jobs WHERE state = ? AND job_id = ?", OPEN, jobId)
+                .next()
+                .map(row -> Objects.requireNonNullElse(row.getInstant("createdat"), Instant.now()));
+
+        return cql.queryForRows("SELECT status, validrecords, ingestionerrors, duplicatesskipped FROM ingest_work_units WHERE job_id = ?", jobId)
+                .collectList()
+                .filter(rows -> rows.stream().allMatch(row -> isFinished(row.getString("status"))))
+                .zipWith(createdAt)
+                .filterWhen(finished -> applied("DELETE FROM ingest_open_jobs WHERE state = ? AND job_id = ? IF EXISTS", OPEN, jobId))
+                .map(finished -> {
+                    long valid = 0;
+                    long errors = 0;
+                    long duplicates = 0;
+                    for (Row row : finished.getT1()) {
+                        valid += row.getLong("validrecords");
+                        errors += row.getLong("ingestionerrors");
+                        duplicates += row.getLong("duplicatesskipped");
+                    }
+                    return ImportResult.of(finished.getT2().toEpochMilli(), valid, errors, duplicates);
+                });
+    }
+
+    @Override
+    public Mono<DistributedJobProgress> progress(UUID jobId) {
+        return cql.queryForRows("SELECT status, validrecords, ingestionerrors, duplicatesskipped FROM ingest_work_units WHERE job_id = ?", jobId)
+                .collectList()
+                .filter(rows -> !rows.isEmpty())
+                .map(rows -> {
+                    int finished = 0;
+                    int failed = 0;
+                    long valid = 0;
+                    long errors = 0;
+                    long duplicates = 0;
+                    for (Row row : rows) {
+                        String status = row.getString("status");
+                        finished += isFinished(status) ? 1 : 0;
+                        failed += WorkUnitStatus.FAILED.name().equals(status) ? 1 : 0;
+                        valid += row.getLong("validrecords");
+                        errors += row.getLong("ingestionerrors");
+                        duplicates += row.getLong("duplicatesskipped");
+                    }
+                    return new DistributedJobProgress(rows.size(), finished, failed, valid, errors, duplicates);
+                });
+    }
+
+    private Mono<Integer> tryClaim(UUID jobId, Row row, String owner, Instant leaseExpires, int maxAttempts) {
+        int unit = row.getInt("unit");
+        if (WorkUnitStatus.PENDING.name().equals(row.getString("status"))) {
+            return applied("UPDATE ingest_work_units SET status = ?, owner = ?, leaseexpires = ? WHERE job_id = ? AND unit = ? IF status = ?",
+                    WorkUnitStatus.CLAIMED.name(), owner, leaseExpires, jobId, unit, WorkUnitStatus.PENDING.name())
+                    .filter(Boolean::booleanValue)
+                    .map(applied -> unit);
+        }
+
+        // The expired lease is a failed attempt; both updates only apply if nobody else renewed or claimed it in the meantime
+        int attempts = row.getInt("attempts") + 1;
+        if (attempts >= maxAttempts) {
+            log.warn("Unit {} of job {} expired on its last attempt, marking it failed", unit, jobId);
+            return applied("UPDATE ingest_work_units SET status = ?, owner = null, leaseexpires = null, attempts = ? "
+                            + "WHERE job_id = ? AND unit = ? IF owner = ? AND leaseexpires = ?",
+                    WorkUnitStatus.FAILED.name(), attempts, jobId, unit, row.getString("owner"), row.getInstant("leaseexpires"))
+                    .then(Mono.empty());
+        }
+        log.info("Reclaiming unit {} of job {} from {}", unit, jobId, row.getString("owner"));
+        return applied("UPDATE ingest_work_units SET owner = ?, leaseexpires = ?, attempts = ? "
+                        + "WHERE job_id = ? AND unit = ? IF owner = ? AND leaseexpires = ?",
+                owner, leaseExpires, attempts, jobId, unit, row.getString("owner"), row.getInstant("leaseexpires"))
+                .filter(Boolean::booleanValue)
+                .map(applied -> unit);
+    }
+
+    private Mono<Void> cancelUnit(UUID jobId, int unit, String status) {
+        if (isFinished(status)) {
+            return Mono.empty();
+        }
+        return applied("UPDATE ingest_work_units SET status = ?, owner = null, leaseexpires = null, payload = null "
+                        + "WHERE job_id = ? AND unit = ? IF status = ?",
+                WorkUnitStatus.CANCELLED.name(), jobId, unit, status)
+                // The unit was claimed, released or finished in the meantime, retry with its new status
+                .flatMap(applied -> applied ? Mono.<Void>empty()
+                        : cql.queryForRows("SELECT status FROM ingest_work_units WHERE job_id = ? AND unit = ?", jobId, unit)
+                                .next()
+                                .flatMap(row -> cancelUnit(jobId, unit, row.getString("status"))));
+    }
+
+    private Mono<Boolean> applied(String statement, Object... args) {
+        return cql.queryForRows(statement, args)
+                .next()
+                .map(row -> row.getBoolean("[applied]"))
+                .defaultIfEmpty(false);
+    }
+
+    private static boolean isClaimable(Row row, Instant now) {
+        String status = row.getString("status");
+        if (WorkUnitStatus.PENDING.name().equals(status)) {
+            return true;
+        }
+        Instant leaseExpires = row.getInstant("leaseexpires");
+        return WorkUnitStatus.CLAIMED.name().equals(status) && leaseExpires != null && leaseExpires.isBefore(now);
+    }
+
+    private static boolean isFinished(String status) {
+        return WorkUnitStatus.DONE.name().equals(status) || WorkUnitStatus.FAILED.name().equals(status)
+                || WorkUnitStatus.CANCELLED.name().equals(status);
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer == null) {
+            return new byte[0];
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,341 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.DistributedIngestProperties;
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import com.geomark.maritimemetrics.model.WorkUnitStatus;
+import com.geomark.maritimemetrics.util.CSVReaderProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This service spreads large ingests over all running instances. An upload is split into
+ * work units by vessel hash, so every vessel's points stay together and in file order, and the
+ * units are published to the {@link WorkCoordinator}. Every instance polls for open jobs, claims
+ * units under a lease, renews the lease while the unit is processed and marks it done.
+ * Units whose lease expires, e.g. because their instance died, are claimed again by others.
+ * The instance that submitted a job tracks it under the job ID, combining the progress of its
+ * units until all of them are finished.
+ */
+@Service
+@Slf4j
+public class DistributedIngestService {
+
+    private final WorkCoordinator coordinator;
+
+    private final IngestPipeline ingestPipeline;
+
+    private final DuplicatePointFilter duplicatePointFilter;
+
+    private final IngestJobService jobService;
+
+    private final Scheduler blockingScheduler;
+
+    private final DistributedIngestProperties properties;
+
+    private final String instanceId;
+
+    private final AtomicInteger activeUnits = new AtomicInteger();
+
+    public DistributedIngestService(WorkCoordinator coordinator, IngestPipeline ingestPipeline,
+                                    DuplicatePointFilter duplicatePointFilter, IngestJobService jobService,
+                                    Scheduler blockingScheduler, DistributedIngestProperties properties) {
+        this.coordinator = coordinator;
+        this.ingestPipeline = ingestPipeline;
+        this.duplicatePointFilter = duplicatePointFilter;
+        this.jobService = jobService;
+        this.blockingScheduler = blockingScheduler;
+        this.properties = properties;
+        this.instanceId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Splits a CSV upload into work units and publishes them. Every unit is compressed into
+     * its own temporary file, which is read back only when the unit is published.
+     *
+     * @param csv the CSV content, starting with the header line
+     * @return a Mono emitting the ID of the new job
+     */
+    public Mono<UUID> submit(InputStream csv) {
+        UUID jobId = UUID.randomUUID();
+        return Mono.fromCallable(() -> split(csv, properties.getUnitsPerJob()))
+                .subscribeOn(blockingScheduler)
+                .flatMap(parts -> coordinator.publish(jobId, Flux.fromIterable(parts)
+                                .concatMap(part -> Mono.fromCallable(() -> Files.readAllBytes(part)).subscribeOn(blockingScheduler)))
+                        .doOnSuccess(v -> log.info("Published ingest job {} with {} units", jobId, parts.size()))
+                        .doFinally(signal -> deleteQuietly(parts)))
+                .thenReturn(jobId);
+    }
+
+    /**
+     * Cancels a distributed job. Its pending units are never claimed, and the instances
+     * processing one of its units stop at their next lease renewal.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono emitting false if the job is not open anymore
+     */
+    public Mono<Boolean> cancel(UUID jobId) {
+        return coordinator.cancel(jobId)
+                .filter(Boolean::booleanValue)
+                .flatMap(cancelled -> {
+                    log.info("Cancelled distributed ingest job {}", jobId);
+                    // No instance may hold a unit of the job anymore, so nobody else closes it
+                    return coordinator.closeIfFinished(jobId).thenReturn(true);
+                })
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * Claims as many units as this instance has free slots and processes them. The slots
+     * are reserved before claiming, so overlapping polls never exceed the maximum.
+     */
+    @Scheduled(fixedDelayString = "${maritime.ingest.distributed.poll-interval:5s}")
+    public void poll() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        int reserved = reserveSlots();
+        if (reserved == 0) {
+            return;
+        }
+        Flux.range(0, reserved)
+                .concatMap(i -> claimNext())
+                .collectList()
+                // Slots without a claimed unit are given back right away
+                .doOnNext(units -> activeUnits.addAndGet(units.size() - reserved))
+                .doOnError(e -> activeUnits.addAndGet(-reserved))
+                .flatMapMany(Flux::fromIterable)
+                .flatMap(this::process)
+                .subscribe(null, e -> log.error("Error polling ingest work units: {}", e.getMessage()));
+    }
+
+    /**
+     * Updates the distributed jobs submitted on this instance from the progress of their
+     * units. A job finishes once all of its units are finished; it is closed here as well,
+     * since its last unit may have failed on an expired lease without any instance closing it.
+     */
+    @Scheduled(fixedDelayString = "${maritime.ingest.distributed.poll-interval:5s}")
+    public void refreshJobs() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Flux.fromIterable(jobService.getDistributedJobs())
+                .concatMap(this::refresh)
+                .subscribe(null, e -> log.error("Error refreshing distributed ingest jobs: {}", e.getMessage()));
+    }
+
+    Mono<Void> refresh(IngestJobService.Job job) {
+        return coordinator.progress(job.getId())
+                .doOnNext(job::unitsProgressed)
+                .filter(DistributedJobProgress::isFinished)
+                .flatMap(progress -> coordinator.closeIfFinished(job.getId())
+                        .doOnNext(ingestPipeline::announce)
+                        .then(Mono.fromRunnable(() -> {
+                            job.finish(progress.failedUnits() > 0 ? IngestJobState.FAILED : IngestJobState.COMPLETED);
+                            log.info("Distributed ingest job {} finished, {} of {} units failed",
+                                    job.getId(), progress.failedUnits(), progress.units());
+                        })));
+    }
+
+    private int reserveSlots() {
+        while (true) {
+            int active = activeUnits.get();
+            int free = properties.getMaxActiveUnits() - active;
+            if (free <= 0) {
+                return 0;
+            }
+            if (activeUnits.compareAndSet(active, active + free)) {
+                return free;
+            }
+        }
+    }
+
+    /**
+     * Processes a claimed unit and reports its outcome to the coordinator. The unit is
+     * abandoned as soon as its lease cannot be renewed, since another instance may own it
+     * or the job was cancelled.
+     *
+     * @param unit the claimed unit
+     * @return a Mono that completes once the outcome has been reported
+     */
+    Mono<Void> process(WorkUnit unit) {
+        log.info("Processing unit {} of job {} (attempt {})", unit.unit(), unit.jobId(), unit.attempts() + 1);
+        IngestJobService.Job job = jobService.register("job " + unit.jobId() + " unit " + unit.unit(), unit.payload().length);
+        Set<String> vessels = ConcurrentHashMap.newKeySet();
+
+        Mono<Void> leaseLost = Flux.interval(properties.getLeaseRenewInterval())
+                .concatMap(tick -> coordinator.renew(unit, instanceId, properties.getLease()))
+                .filter(renewed -> !renewed)
+                .next()
+                .flatMap(renewed -> coordinator.status(unit).defaultIfEmpty(WorkUnitStatus.FAILED))
+                .doOnNext(status -> {
+                    if (status == WorkUnitStatus.CANCELLED) {
+                        log.info("Unit {} of job {} was cancelled", unit.unit(), unit.jobId());
+                        jobService.cancel(job.getId());
+                    } else {
+                        log.warn("Lost the lease of unit {} of job {}", unit.unit(), unit.jobId());
+                    }
+                    forget(vessels);
+                })
+                .then();
+
+        return ingestPipeline.run(Flux.defer(() -> {
+                    try {
+                        return CSVReaderProvider.ofStream(new GZIPInputStream(job.track(new ByteArrayInputStream(unit.payload()))));
+                    } catch (IOException e) {
+                        return Flux.error(e);
+                    }
+                }).doOnNext(record -> vessels.add(record.getField(0))), job)
+                .takeUntilOther(leaseLost)
+                // A cancelled unit is given back instead of being completed with partial results
+                .flatMap(result -> job.isCancelled()
+                        ? release(unit, vessels)
+                        : coordinator.complete(unit, instanceId, result))
+                .onErrorResume(e -> {
+                    log.error("Error processing unit {} of job {}: {}", unit.unit(), unit.jobId(), e.getMessage());
+                    return release(unit, vessels);
+                })
+                .then(coordinator.closeIfFinished(unit.jobId()))
+                .doOnNext(ingestPipeline::announce)
+                .doFinally(signal -> {
+                    // No effect if the pipeline finished, marks units abandoned on a lost lease
+                    job.finish(IngestJobState.FAILED);
+                    activeUnits.decrementAndGet();
+                })
+                .then();
+    }
+
+    /**
+     * Gives a unit back. Its batches still in flight were cancelled, so the duplicate filters
+     * of its vessels are rebuilt from Cassandra before the unit is processed again.
+     */
+    private Mono<Boolean> release(WorkUnit unit, Set<String> vessels) {
+        forget(vessels);
+        return coordinator.release(unit, instanceId, properties.getMaxAttempts());
+    }
+
+    private void forget(Set<String> vessels) {
+        vessels.forEach(duplicatePointFilter::invalidate);
+    }
+
+    private Mono<WorkUnit> claimNext() {
+        return coordinator.openJobs()
+                .concatMap(jobId -> coordinator.claim(jobId, instanceId, properties.getLease(), properties.getMaxAttempts()))
+                .next();
+    }
+
+    /**
+     * Splits the CSV lines into gzip compressed temporary files by the hash of the vessel ID
+     * (first field). Every part starts with the header line; parts without lines are deleted.
+     * The upload is streamed, so only the compressor buffers are held in memory.
+     */
+    static List<Path> split(InputStream csv, int units) throws IOException {
+        Path[] parts = new Path[units];
+        OutputStream[] outputs = new OutputStream[units];
+        boolean[] used = new boolean[units];
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null) {
+                return List.of();
+            }
+            byte[] headerLine = (header + "\n").getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < units; i++) {
+                parts[i] = Files.createTempFile("ingest-unit-", ".csv.gz");
+                outputs[i] = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(parts[i])));
+                outputs[i].write(headerLine);
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                String vesselId = comma < 0 ? line : line.substring(0, comma);
+                int unit = Math.floorMod(vesselId.hashCode(), units);
+                outputs[unit].write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                used[unit] = true;
+            }
+        } catch (IOException e) {
+            closeQuietly(outputs);
+            deleteQuietly(Arrays.asList(parts));
+            throw e;
+        }
+
+        List<Path> published = new ArrayList<>();
+        List<Path> empty = new ArrayList<>();
+        for (int i = 0; i < units; i++) {
+            outputs[i].close();
+            (used[i] ? published : empty).add(parts[i]);
+        }
+        deleteQuietly(empty);
+        return published;
+    }
+
+    private static void closeQuietly(OutputStream[] outputs) {
+        for (OutputStream output : outputs) {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    log.warn("Error closing ingest unit part: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(List<Path> parts) {
+        for (Path part : parts) {
+            if (part != null) {
+                try {
+                    Files.deleteIfExists(part);
+                } catch (IOException e) {
+                    log.warn("Error deleting ingest unit part {}: {}", part, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "instance";
+        }
+    }
+}
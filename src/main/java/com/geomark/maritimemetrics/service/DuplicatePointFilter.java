@@ -0,0 +1,249 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.DeduplicationProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import com.geomark.maritimemetrics.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * This service drops points that have already been ingested before they reach the write stage.
+ * Every vessel has a bloom filter over the timestamps of its stored points. The filter is built
+ * lazily: the first time a vessel shows up in an ingest, the max stored timestamp of its partition
+ * is compared with the filter's watermark and only the keys stored after the watermark are loaded.
+ * <p>
+ * Points are checked in batches. A point the filter has never seen is new; a positive may be a
+ * false one, so the positives of each vessel in a batch are confirmed with a single read before
+ * they are skipped. Batches are checked concurrently, so neither the reads nor the loading of a
+ * new vessel's keys stall the whole ingest. Keys are only added once their write succeeded, and
+ * a filter holding more keys than it was sized for is rebuilt with twice the capacity.
+ */
+@Service
+@Slf4j
+public class DuplicatePointFilter {
+
+    private final VesselMetricsReactiveRepository reactiveRepository;
+
+    private final DeduplicationProperties properties;
+
+    private final Map<String, VesselFilter> filters;
+
+    public DuplicatePointFilter(VesselMetricsReactiveRepository reactiveRepository, DeduplicationProperties properties) {
+        this.reactiveRepository = reactiveRepository;
+        this.properties = properties;
+        this.filters = Collections.synchronizedMap(new LinkedHashMap<String, VesselFilter>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VesselFilter> eldest) {
+                return size() > properties.getMaxTrackedVessels();
+            }
+        });
+    }
+
+    /**
+     * Opens a session for one ingest. Each vessel filter is refreshed at most once per session.
+     *
+     * @return a new session
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * The number of points checked together, see {@link Session#filterNew(List)}.
+     */
+    public int getBatchSize() {
+        return properties.getBatchSize();
+    }
+
+    /**
+     * The maximum number of batches to check at the same time.
+     */
+    public int getConcurrency() {
+        return properties.getConcurrency();
+    }
+
+    /**
+     * Records points whose write succeeded, so later ingests skip them.
+     *
+     * @param written the written points
+     */
+    public void recordWritten(List<VesselMetrics> written) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (VesselMetrics metric : written) {
+            VesselFilter filter = filters.get(metric.getKey().getVesselId());
+            if (filter != null) {
+                filter.add(metric.getKey().getTimestamp().toEpochMilli());
+            }
+        }
+    }
+
+    /**
+     * Forgets the filter of a vessel. The filter is rebuilt from Cassandra the next time the
+     * vessel is ingested.
+     *
+     * @param vesselId the ID of the vessel
+     */
+    public void invalidate(String vesselId) {
+        filters.remove(vesselId);
+    }
+
+    /**
+     * Returns the number of keys the filter of a vessel is sized for, or 0 if it has none.
+     */
+    long capacityOf(String vesselId) {
+        VesselFilter filter = filters.get(vesselId);
+        return filter == null ? 0 : filter.capacity;
+    }
+
+    private Mono<VesselFilter> refresh(String vesselId) {
+        VesselFilter filter = filters.compute(vesselId, (id, current) -> {
+            if (current == null) {
+                return newFilter(properties.getExpectedPointsPerVessel());
+            }
+            return current.isSaturated() ? newFilter(current.inserted.get() * 2) : current;
+        });
+
+        return load(vesselId, filter).flatMap(loaded -> {
+            if (!loaded.isSaturated()) {
+                return Mono.just(loaded);
+            }
+            // The partition holds more points than the filter was sized for
+            VesselFilter resized = newFilter(loaded.inserted.get() * 2);
+            filters.put(vesselId, resized);
+            log.debug("Resizing the duplicate filter of vessel {} to {} keys", vesselId, resized.capacity);
+            return load(vesselId, resized);
+        });
+    }
+
+    /**
+     * Adds the keys stored after the watermark of the filter.
+     */
+    private Mono<VesselFilter> load(String vesselId, VesselFilter filter) {
+        return reactiveRepository.fetchLatestByVesselId(vesselId)
+                .map(latest -> latest.getKey().getTimestamp())
+                .filter(max -> filter.watermark == null || max.isAfter(filter.watermark))
+                .flatMap(max -> {
+                    Flux<VesselMetrics> keys = filter.watermark == null
+                            ? reactiveRepository.fetchKeysByVesselId(vesselId)
+                            : reactiveRepository.fetchKeysByVesselIdAfter(vesselId, filter.watermark);
+                    return keys
+                            .doOnNext(stored -> filter.add(stored.getKey().getTimestamp().toEpochMilli()))
+                            .count()
+                            .doOnNext(count -> {
+                                filter.watermark = max;
+                                log.debug("Loaded {} stored keys of vessel {} into its duplicate filter", count, vesselId);
+                            });
+                })
+                .thenReturn(filter);
+    }
+
+    private VesselFilter newFilter(long capacity) {
+        long size = Math.max(capacity, properties.getExpectedPointsPerVessel());
+        return new VesselFilter(new BloomFilter(size, properties.getFalsePositiveRate()), size);
+    }
+
+    /**
+     * The duplicate filter state of one ingest.
+     */
+    public class Session {
+
+        private final Map<String, Mono<VesselFilter>> refreshed = new ConcurrentHashMap<>();
+
+        /**
+         * Drops the points of a batch that have been ingested already. Points repeated within
+         * the same ingest are not detected here.
+         *
+         * @param batch the parsed points
+         * @return a Mono emitting the points that are not stored yet, in the order of the batch
+         */
+        public Mono<List<VesselMetrics>> filterNew(List<VesselMetrics> batch) {
+            if (!properties.isEnabled()) {
+                return Mono.just(batch);
+            }
+            Map<String, List<Instant>> timestampsByVessel = new HashMap<>();
+            for (VesselMetrics metric : batch) {
+                timestampsByVessel.computeIfAbsent(metric.getKey().getVesselId(), id -> new ArrayList<>())
+                        .add(metric.getKey().getTimestamp());
+            }
+            return Flux.fromIterable(timestampsByVessel.entrySet())
+                    .flatMap(vessel -> stored(vessel.getKey(), vessel.getValue())
+                            .map(stored -> Map.entry(vessel.getKey(), stored)))
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .map(stored -> batch.stream()
+                            .filter(metric -> !stored.get(metric.getKey().getVesselId()).contains(metric.getKey().getTimestamp()))
+                            .toList());
+        }
+
+        /**
+         * Returns which of the given timestamps of a vessel are stored. Only the positives of
+         * the filter are read, all in one query.
+         */
+        private Mono<Set<Instant>> stored(String vesselId, List<Instant> timestamps) {
+            return refreshed.computeIfAbsent(vesselId, id -> refresh(id).cache())
+                    .flatMap(filter -> {
+                        List<Instant> positives = timestamps.stream()
+                                .filter(timestamp -> filter.bloom.mightContain(timestamp.toEpochMilli()))
+                                .distinct()
+                                .toList();
+                        if (positives.isEmpty()) {
+                            return Mono.just(Set.<Instant>of());
+                        }
+                        return reactiveRepository.fetchKeysByVesselIdAndTimestampIn(vesselId, positives)
+                                .map(stored -> stored.getKey().getTimestamp())
+                                .collect(Collectors.toSet());
+                    });
+        }
+    }
+
+    private static final class VesselFilter {
+
+        private final BloomFilter bloom;
+
+        /**
+         * The number of keys the bloom filter is sized for.
+         */
+        private final long capacity;
+
+        /**
+         * The number of keys added that the filter did not contain yet.
+         */
+        private final AtomicLong inserted = new AtomicLong();
+
+        /**
+         * The max stored timestamp whose keys have been loaded, or null if nothing was loaded yet.
+         */
+        private volatile Instant watermark;
+
+        private VesselFilter(BloomFilter bloom, long capacity) {
+            this.bloom = bloom;
+            this.capacity = capacity;
+        }
+
+        private void add(long key) {
+            if (!bloom.add(key)) {
+                inserted.incrementAndGet();
+            }
+        }
+
+        private boolean isSaturated() {
+            return inserted.get() > capacity;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import com.geomark.maritimemetrics.model.WorkUnitStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory stand-in for the Cassandra work coordinator, for single node runs and for tests
+ * that simulate several instances sharing one coordinator. All state changes are atomic.
+ * Closed jobs are kept with their results, like the unit rows in Cassandra.
+ */
+@Service
+@ConditionalOnProperty(name = "maritime.ingest.distributed.coordinator", havingValue = "memory")
+public class InMemoryWorkCoordinator implements WorkCoordinator {
+
+    private final Clock clock;
+
+    private final Map<UUID, Job> jobs = new LinkedHashMap<>();
+
+    @Autowired
+    public InMemoryWorkCoordinator() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryWorkCoordinator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<Void> publish(UUID jobId, Flux<byte[]> payloads) {
+        return payloads.collectList().doOnNext(units -> {
+            synchronized (jobs) {
+                Job job = new Job(clock.instant());
+                for (byte[] payload : units) {
+                    job.units.add(new Unit(payload));
+                }
+                jobs.put(jobId, job);
+            }
+        }).then();
+    }
+
+    @Override
+    public Flux<UUID> openJobs() {
+        return Flux.defer(() -> {
+            synchronized (jobs) {
+                return Flux.fromIterable(jobs.entrySet().stream()
+                        .filter(job -> !job.getValue().closed)
+                        .map(Map.Entry::getKey)
+                        .toList());
+            }
+        });
+    }
+
+    @Override
+    public Mono<WorkUnit> claim(UUID jobId, String owner, Duration lease, int maxAttempts) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Job job = jobs.get(jobId);
+                if (job == null || job.closed) {
+                    return null;
+                }
+                Instant now = clock.instant();
+                for (int i = 0; i < job.units.size(); i++) {
+                    Unit unit = job.units.get(i);
+                    boolean expired = unit.status == WorkUnitStatus.CLAIMED && unit.leaseExpires.isBefore(now);
+                    if (expired && ++unit.attempts >= maxAttempts) {
+                        unit.status = WorkUnitStatus.FAILED;
+                        unit.owner = null;
+                        continue;
+                    }
+                    if (unit.status == WorkUnitStatus.PENDING || expired) {
+                        unit.status = WorkUnitStatus.CLAIMED;
+                        unit.owner = owner;
+                        unit.leaseExpires = now.plus(lease);
+                        return new WorkUnit(jobId, i, unit.payload, unit.attempts);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> renew(WorkUnit unit, String owner, Duration lease) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Unit state = owned(unit, owner);
+                if (state == null) {
+                    return false;
+                }
+                state.leaseExpires = clock.instant().plus(lease);
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> complete(WorkUnit unit, String owner, ImportResult result) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Unit state = owned(unit, owner);
+                if (state == null) {
+                    return false;
+                }
+                state.status = WorkUnitStatus.DONE;
+                state.payload = null;
+                state.result = result;
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> release(WorkUnit unit, String owner, int maxAttempts) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Unit state = owned(unit, owner);
+                if (state == null) {
+                    return false;
+                }
+                state.attempts++;
+                state.status = state.attempts >= maxAttempts ? WorkUnitStatus.FAILED : WorkUnitStatus.PENDING;
+                state.owner = null;
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Mono<WorkUnitStatus> status(WorkUnit unit) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Job job = jobs.get(unit.jobId());
+                return job == null ? null : job.units.get(unit.unit()).status;
+            }
+        });
+    }
+
+    @Override
+    public Mono<Boolean> cancel(UUID jobId) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Job job = jobs.get(jobId);
+                if (job == null || job.closed) {
+                    return false;
+                }
+                for (Unit unit : job.units) {
+                    if (!unit.isFinished()) {
+                        unit.status = WorkUnitStatus.CANCELLED;
+                        unit.payload = null;
+                        unit.owner = null;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Mono<ImportResult> closeIfFinished(UUID jobId) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Job job = jobs.get(jobId);
+                if (job == null || job.closed || !job.units.stream().allMatch(Unit::isFinished)) {
+                    return null;
+                }
+                job.closed = true;
+                long valid = 0;
+                long errors = 0;
+                long duplicates = 0;
+                for (Unit unit : job.units) {
+                    if (unit.result != null) {
+                        valid += unit.result.validRecords().get();
+                        errors += unit.result.ingestionErrors().get();
+                        duplicates += unit.result.duplicatesSkipped().get();
+                    }
+                }
+                return ImportResult.of(job.createdAt.toEpochMilli(), valid, errors, duplicates);
+            }
+        });
+    }
+
+    @Override
+    public Mono<DistributedJobProgress> progress(UUID jobId) {
+        return Mono.fromCallable(() -> {
+            synchronized (jobs) {
+                Job job = jobs.get(jobId);
+                if (job == null) {
+                    return null;
+                }
+                int finished = 0;
+                int failed = 0;
+                long valid = 0;
+                long errors = 0;
+                long duplicates = 0;
+                for (Unit unit : job.units) {
+                    finished += unit.isFinished() ? 1 : 0;
+                    failed += unit.status == WorkUnitStatus.FAILED ? 1 : 0;
+                    if (unit.result != null) {
+                        valid += unit.result.validRecords().get();
+                        errors += unit.result.ingestionErrors().get();
+                        duplicates += unit.result.duplicatesSkipped().get();
+                    }
+                }
+                return new DistributedJobProgress(job.units.size(), finished, failed, valid, errors, duplicates);
+            }
+        });
+    }
+
+    /**
+     * Returns the status of every unit of a job, or an empty list once the job is closed.
+     *
+     * @param jobId the ID of the job
+     * @return the unit states in unit order
+     */
+    public List<WorkUnitStatus> unitStatuses(UUID jobId) {
+        synchronized (jobs) {
+            Job job = jobs.get(jobId);
+            return job == null || job.closed ? List.of() : job.units.stream().map(unit -> unit.status).toList();
+        }
+    }
+
+    private Unit owned(WorkUnit unit, String owner) {
+        Job job = jobs.get(unit.jobId());
+        if (job == null) {
+            return null;
+        }
+        Unit state = job.units.get(unit.unit());
+        return state.status == WorkUnitStatus.CLAIMED && owner.equals(state.owner) ? state : null;
+    }
+
+    private static final class Job {
+
+        private final Instant createdAt;
+
+        private final List<Unit> units = new ArrayList<>();
+
+        private boolean closed;
+
+        private Job(Instant createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class Unit {
+
+        private byte[] payload;
+
+        private WorkUnitStatus status = WorkUnitStatus.PENDING;
+
+        private String owner;
+
+        private Instant leaseExpires;
+
+        private int attempts;
+
+        private ImportResult result;
+
+        private Unit(byte[] payload) {
+            this.payload = payload;
+        }
+
+        private boolean isFinished() {
+            return status == WorkUnitStatus.DONE || status == WorkUnitStatus.FAILED || status == WorkUnitStatus.CANCELLED;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.IngestJobProperties;
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.IngestProgress;
+import com.geomark.maritimemetrics.util.CountingInputStream;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This service tracks the ingest jobs of this instance. Every job counts the points leaving
+ * each stage of the pipeline, from which throughput, ETA and per-stage backlog are derived.
+ * Progress is published on {@code /topic/ingestJobs/{jobId}} at most once per progress
+ * interval and only when it changed; running jobs can be cancelled.
+ */
+@Service
+@Slf4j
+public class IngestJobService {
+
+    public static final String PROGRESS_DESTINATION = "/topic/ingestJobs/";
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+
+    private final IngestJobProperties properties;
+
+    private final Clock clock;
+
+    private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IngestJobService(SimpMessagingTemplate simpMessagingTemplate, IngestJobProperties properties) {
+        this(simpMessagingTemplate, properties, Clock.systemUTC());
+    }
+
+    public IngestJobService(SimpMessagingTemplate simpMessagingTemplate, IngestJobProperties properties, Clock clock) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a new running job.
+     *
+     * @param name       the name of the uploaded file or work unit
+     * @param totalBytes the size of the input, or 0 if unknown
+     * @return the job
+     */
+    public Job register(String name, long totalBytes) {
+        return register(UUID.randomUUID(), name, totalBytes);
+    }
+
+    /**
+     * Registers a new running job with a given ID.
+     *
+     * @param jobId      the ID of the job
+     * @param name       the name of the uploaded file or work unit
+     * @param totalBytes the size of the input, or 0 if unknown
+     * @return the job
+     */
+    public Job register(UUID jobId, String name, long totalBytes) {
+        Job job = new Job(jobId, name, totalBytes, properties.getErrorSamples(), clock);
+        jobs.put(jobId, job);
+        evictFinishedJobs();
+        return job;
+    }
+
+    public IngestProgress getProgress(UUID jobId) {
+        return find(jobId).progress();
+    }
+
+    /**
+     * Returns the progress of all tracked jobs, most recent first.
+     */
+    public List<IngestProgress> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((Job job) -> job.startedAt).reversed())
+                .map(Job::progress)
+                .toList();
+    }
+
+    /**
+     * Returns the distributed jobs submitted on this instance that are not finished yet.
+     */
+    List<Job> getDistributedJobs() {
+        return jobs.values().stream()
+                .filter(job -> job.state.get() == IngestJobState.DISTRIBUTED)
+                .toList();
+    }
+
+    /**
+     * Cancels a running job. The job stops reading its input, writes the points already in
+     * the pipeline and finishes as cancelled. A distributed job is only marked as cancelled,
+     * its work units are cancelled through the {@link WorkCoordinator}.
+     *
+     * @param jobId the ID of the job
+     * @return the progress of the job
+     */
+    public IngestProgress cancel(UUID jobId) {
+        Job job = find(jobId);
+        if (job.cancel()) {
+            log.info("Cancelling ingest job {} ({})", jobId, job.name);
+        }
+        return job.progress();
+    }
+
+    /**
+     * Publishes the progress of every job that changed since its last event.
+     */
+    @Scheduled(fixedRateString = "${maritime.ingest.jobs.progress-interval:1s}")
+    public void publishProgress() {
+        for (Job job : jobs.values()) {
+            long version = job.modifications.sum();
+            if (version != job.publishedVersion) {
+                job.publishedVersion = version;
+                simpMessagingTemplate.convertAndSend(PROGRESS_DESTINATION + job.id, job.progress());
+            }
+        }
+    }
+
+    private Job find(UUID jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No ingest job " + jobId);
+        }
+        return job;
+    }
+
+    private void evictFinishedJobs() {
+        List<Job> finished = jobs.values().stream()
+                .filter(job -> job.state.get().isFinished())
+                .sorted(Comparator.comparing((Job job) -> job.startedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - properties.getRetainedJobs(); i++) {
+            jobs.remove(finished.get(i).id);
+        }
+    }
+
+    /**
+     * The counters of one ingest job. All counters are updated without locks from the
+     * pipeline threads; every update also counts as a modification, which tells the progress
+     * publisher whether the job changed since its last event.
+     */
+    public static final class Job {
+
+        private final UUID id;
+
+        private final String name;
+
+        private final long totalBytes;
+
+        private final Clock clock;
+
+        private final Instant startedAt;
+
+        private final ImportResult result;
+
+        private final LongAdder bytesRead = new LongAdder();
+
+        private final LongAdder rowsRead = new LongAdder();
+
+        private final LongAdder rowsAccepted = new LongAdder();
+
+        private final LongAdder rowsProcessed = new LongAdder();
+
+        private final LongAdder rowsWritten = new LongAdder();
+
+        private final LongAdder writeFailures = new LongAdder();
+
+        private final LongAdder modifications = new LongAdder();
+
+        private final Sinks.Empty<Void> cancelSignal = Sinks.empty();
+
+        private final AtomicLong finishedAt = new AtomicLong();
+
+        private final AtomicReference<IngestJobState> state = new AtomicReference<>(IngestJobState.RUNNING);
+
+        private volatile long publishedVersion = -1;
+
+        private volatile DistributedJobProgress units;
+
+        private Job(UUID id, String name, long totalBytes, int errorSamples, Clock clock) {
+            this.id = id;
+            this.name = name;
+            this.totalBytes = totalBytes;
+            this.clock = clock;
+            this.startedAt = clock.instant();
+            this.result = new ImportResult(new AtomicLong(startedAt.toEpochMilli()), new AtomicLong(), new AtomicLong(),
+                    new AtomicLong(), new ErrorCapture(errorSamples));
+        }
+
+        public UUID getId() {
+            return id;
+        }
+
+        /**
+         * The result counters of the job, shared with the pipeline.
+         */
+        public ImportResult getResult() {
+            return result;
+        }
+
+        /**
+         * Wraps the input of the job to count the bytes read.
+         */
+        public InputStream track(InputStream input) {
+            return new CountingInputStream(input, bytesRead);
+        }
+
+        /**
+         * Completes when the job is cancelled.
+         */
+        public Mono<Void> cancelled() {
+            return cancelSignal.asMono();
+        }
+
+        public boolean isCancelled() {
+            return state.get() == IngestJobState.CANCELLED;
+        }
+
+        void rowRead() {
+            rowsRead.increment();
+            modifications.increment();
+        }
+
+        void rowsAccepted(int rows) {
+            rowsAccepted.add(rows);
+            modifications.increment();
+        }
+
+        void duplicatesSkipped(int rows) {
+            result.duplicatesSkipped().addAndGet(rows);
+            modifications.increment();
+        }
+
+        /**
+         * Moves an accepted point to the skipped duplicates, it repeats a point of the same input.
+         */
+        void repeatSkipped() {
+            rowsAccepted.decrement();
+            result.duplicatesSkipped().incrementAndGet();
+            modifications.increment();
+        }
+
+        void rowProcessed() {
+            rowsProcessed.increment();
+            modifications.increment();
+        }
+
+        void rowsWritten(int rows) {
+            rowsWritten.add(rows);
+            modifications.increment();
+        }
+
+        void writeFailed(int rows) {
+            writeFailures.add(rows);
+            modifications.increment();
+        }
+
+        /**
+         * Marks the job as split into work units. The job keeps running until its units are
+         * finished; its counters are taken from the progress of the units.
+         */
+        public void distribute() {
+            if (state.compareAndSet(IngestJobState.RUNNING, IngestJobState.DISTRIBUTED)) {
+                modifications.increment();
+            }
+        }
+
+        /**
+         * Takes over the combined progress of the work units of a distributed job.
+         */
+        void unitsProgressed(DistributedJobProgress progress) {
+            if (progress.equals(units)) {
+                return;
+            }
+            units = progress;
+            result.validRecords().set(progress.validRecords());
+            result.ingestionErrors().set(progress.ingestionErrors());
+            result.duplicatesSkipped().set(progress.duplicatesSkipped());
+            modifications.increment();
+        }
+
+        /**
+         * Marks the job as finished. A cancelled job stays cancelled.
+         *
+         * @param outcome COMPLETED or FAILED
+         */
+        public void finish(IngestJobState outcome) {
+            // The state is settled first, so a cancel racing with the end of the job either wins or fails
+            IngestJobState current = state.get();
+            if (!current.isFinished()) {
+                state.compareAndSet(current, outcome);
+            }
+            if (finishedAt.compareAndSet(0, clock.millis())) {
+                modifications.increment();
+            }
+        }
+
+        private boolean cancel() {
+            IngestJobState current = state.get();
+            if ((current != IngestJobState.RUNNING && current != IngestJobState.DISTRIBUTED)
+                    || !state.compareAndSet(current, IngestJobState.CANCELLED)) {
+                return false;
+            }
+            cancelSignal.tryEmitEmpty();
+            modifications.increment();
+            return true;
+        }
+
+        IngestProgress progress() {
+            DistributedJobProgress distributed = units;
+            if (distributed != null) {
+                return distributedProgress(distributed);
+            }
+            long finished = finishedAt.get();
+            long elapsed = Math.max(1, (finished == 0 ? clock.millis() : finished) - startedAt.toEpochMilli());
+            long bytes = bytesRead.sum();
+            long read = rowsRead.sum();
+            long accepted = rowsAccepted.sum();
+            long processed = rowsProcessed.sum();
+            long written = rowsWritten.sum();
+            long duplicates = result.duplicatesSkipped().get();
+            long bytesPerSecond = bytes * 1000 / elapsed;
+
+            Long eta = null;
+            if (finished != 0) {
+                eta = 0L;
+            } else if (totalBytes > 0 && bytesPerSecond > 0) {
+                eta = Math.max(0, totalBytes - bytes) / bytesPerSecond;
+            }
+
+            Map<String, Long> backlog = new LinkedHashMap<>();
+            backlog.put("deduplication", Math.max(0, read - accepted - duplicates));
+            backlog.put("derivation", Math.max(0, accepted - processed));
+            backlog.put("write", Math.max(0, processed - written - writeFailures.sum()));
+
+            return new IngestProgress(id, name, state.get(), startedAt, elapsed, totalBytes, bytes, read, written, duplicates,
+                    result.ingestionErrors().get(), written * 1000 / elapsed, bytesPerSecond, eta, backlog,
+                    result.errors().getCounts(), result.errors().getSamples(), 0, 0);
+        }
+
+        /**
+         * The progress of a distributed job counts the finished units only, the backlog of its
+         * running units is on the instances processing them. The ETA is derived from the units
+         * finished so far.
+         */
+        private IngestProgress distributedProgress(DistributedJobProgress distributed) {
+            long finished = finishedAt.get();
+            long elapsed = Math.max(1, (finished == 0 ? clock.millis() : finished) - startedAt.toEpochMilli());
+            long written = distributed.validRecords();
+            long duplicates = distributed.duplicatesSkipped();
+            long errors = distributed.ingestionErrors();
+
+            Long eta = null;
+            if (finished != 0) {
+                eta = 0L;
+            } else if (distributed.finishedUnits() > 0) {
+                eta = elapsed * (distributed.units() - distributed.finishedUnits()) / distributed.finishedUnits() / 1000;
+            }
+
+            return new IngestProgress(id, name, state.get(), startedAt, elapsed, totalBytes, 0, written + duplicates + errors,
+                    written, duplicates, errors, written * 1000 / elapsed, 0, eta, Map.of(),
+                    result.errors().getCounts(), result.errors().getSamples(), distributed.units(), distributed.finishedUnits());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import de.siegmar.fastcsv.reader.CsvRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * This service runs the ingest pipeline over a stream of CSV records: parsing, duplicate
+ * suppression, derivation, validation, analytics sketches and the governed write stage.
+ * It is shared by local ingests and by the work units of distributed ingests.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestPipeline {
+
+    private final VesselParserService parserService;
+
+    private final VesselProcessorService processorService;
+
+    private final WriteGovernor writeGovernor;
+
+    private final DuplicatePointFilter duplicatePointFilter;
+
+    private final VesselAnalyticsService analyticsService;
+
+    private final LiveVesselFeedService liveFeed;
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+
+    private final Scheduler blockingScheduler;
+
+    /**
+     * Ingests the given CSV records and counts the progress on the given job. A cancelled job
+     * stops reading records; the points already in the pipeline are still written.
+     * <p>
+     * The records are read and parsed on the blocking scheduler. Demand is refilled from the
+     * Cassandra driver threads of the duplicate check and the write stage, so the scheduler is
+     * applied to the source itself and every read runs on it, not only the first one.
+     *
+     * @param records the CSV records, starting with the header line
+     * @param job     the job tracking the ingest
+     * @return a Mono emitting the result once every point has been written
+     */
+    public Mono<ImportResult> run(Flux<CsvRecord> records, IngestJobService.Job job) {
+        return Mono.defer(() -> {
+            ImportResult asyncRes = job.getResult();
+
+            DuplicatePointFilter.Session duplicates = duplicatePointFilter.newSession();
+            VesselProcessorService.Sequence sequence = processorService.newSequence();
+            VesselAnalyticsService.Accumulator sketches = analyticsService.newAccumulator(asyncRes.errors());
+
+            Flux<VesselMetrics> fl = records
+                    .subscribeOn(blockingScheduler)
+                    .takeUntilOther(job.cancelled())
+                    .map(parserService::parseMetrics)
+                    .filter(metric -> metric.getKey() != null)
+                    .doOnNext(metric -> job.rowRead())
+                    // Known points are dropped before derivation, validation and the write stage;
+                    // batches are checked concurrently and passed on in file order
+                    .buffer(duplicatePointFilter.getBatchSize())
+                    .flatMapSequential(batch -> duplicates.filterNew(batch)
+                            .doOnNext(fresh -> {
+                                job.rowsAccepted(fresh.size());
+                                job.duplicatesSkipped(batch.size() - fresh.size());
+                            }), duplicatePointFilter.getConcurrency())
+                    .flatMapIterable(fresh -> fresh)
+                    // Every point is derived and validated against the previous point of its vessel
+                    .<VesselMetrics>handle((metric, sink) -> {
+                        VesselMetrics processed = sequence.process(metric);
+                        if (processed != null) {
+                            sink.next(processed);
+                        } else {
+                            job.repeatSkipped();
+                        }
+                    })
+
+                    .onErrorContinue((throwable, o) -> {
+                                asyncRes.ingestionErrors().incrementAndGet();
+                                asyncRes.errors().record(throwable);
+                                log.error("Error processing line: {}", o);
+                                log.error("Error message: {}", throwable.getMessage());
+                            })
+                    .doOnEach( signal -> {
+                        if (signal.isOnNext()) {
+                            long count = asyncRes.validRecords().incrementAndGet();
+                            log.debug("Processed {} lines", count);
+                        }
+                    });
+
+            // Writes are batched and throttled by the governor, which adapts both to the cluster latency
+            return fl.doOnNext(metric -> job.rowProcessed())
+                    .bufferUntil(writeGovernor.batchBoundary())
+                    // Every governed write is a single partition batch, so the coordinator never fans out
+                    .concatMapIterable(VesselProcessorService::byVessel)
+                    // Written batches are passed on in ingest order, the sketches only see stored points
+                    .flatMapSequential(batch -> writeGovernor.execute(() -> processorService.save(batch))
+                            .doOnSuccess(v -> {
+                                // Keys are only marked once stored, so an interrupted ingest skips nothing it did not write
+                                duplicatePointFilter.recordWritten(batch);
+                                job.rowsWritten(batch.size());
+                                liveFeed.publish(batch);
+                            })
+                            .thenReturn(batch)
+                            .onErrorResume(e -> {
+                                job.writeFailed(batch.size());
+                                asyncRes.ingestionErrors().addAndGet(batch.size());
+                                asyncRes.errors().record(e, batch.size());
+                                return Mono.empty();
+                            }), writeGovernor.getMaxConcurrency())
+                    .concatMap(sketches::record)
+                    .then(Mono.defer(sketches::flush))
+                    // The sketches of the points written so far are also flushed when the ingest stops early
+                    .onErrorResume(e -> sketches.flush().then(Mono.error(e)))
+                    .doOnCancel(() -> sketches.flush().subscribe())
+                    .thenReturn(asyncRes)
+                    .doOnSuccess(result -> job.finish(IngestJobState.COMPLETED))
+                    .doOnError(e -> {
+                        asyncRes.errors().record(e);
+                        job.finish(IngestJobState.FAILED);
+                    });
+        });
+    }
+
+    /**
+     * Logs the result of an ingest and announces it on the STOMP broker.
+     *
+     * @param asyncRes the result of the ingest
+     * @return the result
+     */
+    public ImportResult announce(ImportResult asyncRes) {
+
+        log.info("Completed processing {} lines", asyncRes.validRecords().get());
+        log.info("Completed processing metrics in {} milliseconds", asyncRes.totalTimeElapsed().get());
+        log.info("Total errors: {}",asyncRes.ingestionErrors().get());
+        log.info("Skipped duplicates: {}", asyncRes.duplicatesSkipped().get());
+
+
+        simpMessagingTemplate.convertAndSend("/topic/ingestionResults", asyncRes);
+
+        return asyncRes;
+    }
+}
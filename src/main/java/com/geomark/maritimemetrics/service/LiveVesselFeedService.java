@@ -0,0 +1,301 @@
+package com.geomark.maritimemetrics.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geomark.maritimemetrics.config.LiveFeedProperties;
+import com.geomark.maritimemetrics.model.LiveVesselUpdate;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This service streams newly ingested points to STOMP subscribers of {@code /topic/vessels}
+ * (whole fleet) and {@code /topic/vessels/{vesselId}}.
+ * <p>
+ * Updates are conflated: only the latest state of each vessel is kept, and every subscriber
+ * only tracks which vessels changed since its last message. On every tick each subscriber
+ * gets at most one message with the latest state of its changed vessels, sent straight to
+ * the client outbound channel. A subscriber whose previous message has not been handled yet
+ * is skipped, so a slow client receives fewer, fresher updates instead of a growing queue.
+ */
+@Service
+@Slf4j
+public class LiveVesselFeedService implements ExecutorChannelInterceptor {
+
+    public static final String FLEET_DESTINATION = "/topic/vessels";
+
+    private static final String VESSEL_DESTINATION_PREFIX = FLEET_DESTINATION + "/";
+
+    private static final String SUBSCRIBER_HEADER = "liveFeedSubscriber";
+
+    private final AbstractSubscribableChannel clientOutboundChannel;
+
+    private final ObjectMapper objectMapper;
+
+    private final LiveFeedProperties properties;
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private final Map<String, LiveVesselUpdate> latest = new ConcurrentHashMap<>();
+
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    private volatile Set<String> watchedVessels = Set.of();
+
+    private volatile boolean fleetWatched;
+
+    public LiveVesselFeedService(@Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel,
+                                 ObjectMapper objectMapper,
+                                 LiveFeedProperties properties) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Registers this service on the client outbound channel to learn when its messages were handled.
+     */
+    @PostConstruct
+    public void init() {
+        clientOutboundChannel.addInterceptor(this);
+    }
+
+    /**
+     * Records newly written points. Points of vessels nobody watches are dropped right away.
+     *
+     * @param metrics the written points
+     */
+    public void publish(List<VesselMetrics> metrics) {
+        if (!properties.isEnabled() || (!fleetWatched && watchedVessels.isEmpty())) {
+            return;
+        }
+        for (VesselMetrics metric : metrics) {
+            String vesselId = metric.getKey().getVesselId();
+            if (fleetWatched || watchedVessels.contains(vesselId)) {
+                LiveVesselUpdate update = LiveVesselUpdate.of(metric);
+                latest.merge(vesselId, update,
+                        (current, next) -> next.timestamp().isBefore(current.timestamp()) ? current : next);
+                changed.add(vesselId);
+            }
+        }
+    }
+
+    /**
+     * Hands the changes since the last tick to the subscribers and sends one message to every
+     * subscriber that has pending vessels and is not still busy with its previous message.
+     */
+    @Scheduled(fixedRateString = "${maritime.live-feed.tick:500ms}")
+    public void tick() {
+        if (!properties.isEnabled() || subscribers.isEmpty()) {
+            return;
+        }
+
+        Set<String> tickChanges = new HashSet<>();
+        for (Iterator<String> it = changed.iterator(); it.hasNext(); ) {
+            tickChanges.add(it.next());
+            it.remove();
+        }
+
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.vesselId == null) {
+                subscriber.pending.addAll(tickChanges);
+            } else if (tickChanges.contains(subscriber.vesselId)) {
+                subscriber.pending.add(subscriber.vesselId);
+            }
+
+            if (!subscriber.pending.isEmpty() && subscriber.isReady(now, properties.getStallTimeout().toNanos())) {
+                send(subscriber, now);
+            }
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        if (subscribers.values().removeIf(subscriber -> subscriber.sessionId.equals(event.getSessionId()))) {
+            refreshWatched();
+        }
+    }
+
+    /**
+     * Frees the subscriber of a live feed message once the outbound channel handled it.
+     */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        Object key = message.getHeaders().get(SUBSCRIBER_HEADER);
+        if (key != null) {
+            Subscriber subscriber = subscribers.get(key);
+            if (subscriber != null) {
+                subscriber.inFlightSince.set(0);
+            }
+        }
+    }
+
+    /**
+     * Registers a subscription if it targets the live feed. New subscribers start with the
+     * latest known state of the vessels they watch.
+     */
+    void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String vesselId;
+        if (FLEET_DESTINATION.equals(destination)) {
+            vesselId = null;
+        } else if (destination.startsWith(VESSEL_DESTINATION_PREFIX) && destination.length() > VESSEL_DESTINATION_PREFIX.length()) {
+            vesselId = destination.substring(VESSEL_DESTINATION_PREFIX.length());
+        } else {
+            return;
+        }
+
+        Subscriber subscriber = new Subscriber(sessionId, subscriptionId, destination, vesselId);
+        if (vesselId == null) {
+            subscriber.pending.addAll(latest.keySet());
+        } else if (latest.containsKey(vesselId)) {
+            subscriber.pending.add(vesselId);
+        }
+        subscribers.put(subscriber.key, subscriber);
+        refreshWatched();
+    }
+
+    void unsubscribe(String sessionId, String subscriptionId) {
+        if (subscribers.remove(key(sessionId, subscriptionId)) != null) {
+            refreshWatched();
+        }
+    }
+
+    private void send(Subscriber subscriber, long now) {
+        List<LiveVesselUpdate> updates = new ArrayList<>();
+        for (Iterator<String> it = subscriber.pending.iterator(); it.hasNext() && updates.size() < properties.getMaxUpdatesPerMessage(); ) {
+            LiveVesselUpdate update = latest.get(it.next());
+            it.remove();
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(updates);
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing live vessel updates: {}", e.getMessage());
+            return;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(subscriber.sessionId);
+        accessor.setSubscriptionId(subscriber.subscriptionId);
+        accessor.setDestination(subscriber.destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(SUBSCRIBER_HEADER, subscriber.key);
+        accessor.setLeaveMutable(true);
+
+        subscriber.inFlightSince.set(now);
+        if (!clientOutboundChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()))) {
+            subscriber.inFlightSince.set(0);
+        }
+    }
+
+    private void refreshWatched() {
+        Set<String> vessels = new HashSet<>();
+        boolean fleet = false;
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.vesselId == null) {
+                fleet = true;
+            } else {
+                vessels.add(subscriber.vesselId);
+            }
+        }
+        watchedVessels = Set.copyOf(vessels);
+        fleetWatched = fleet;
+        if (subscribers.isEmpty()) {
+            latest.clear();
+            changed.clear();
+        } else if (!fleet) {
+            latest.keySet().retainAll(vessels);
+        }
+    }
+
+    private static String key(String sessionId, String subscriptionId) {
+        return sessionId + "/" + subscriptionId;
+    }
+
+    private static final class Subscriber {
+
+        private final String key;
+
+        private final String sessionId;
+
+        private final String subscriptionId;
+
+        private final String destination;
+
+        /**
+         * The watched vessel, or null for the whole fleet.
+         */
+        private final String vesselId;
+
+        /**
+         * The vessels that changed since the last message to this subscriber.
+         */
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        /**
+         * The nano time at which the last message was sent, or 0 once it has been handled.
+         */
+        private final AtomicLong inFlightSince = new AtomicLong();
+
+        private Subscriber(String sessionId, String subscriptionId, String destination, String vesselId) {
+            this.key = key(sessionId, subscriptionId);
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.destination = destination;
+            this.vesselId = vesselId;
+        }
+
+        private boolean isReady(long now, long stallTimeoutNanos) {
+            long since = inFlightSince.get();
+            return since == 0 || now - since > stallTimeoutNanos;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.geomark.maritimemetrics.config.ReprocessProperties;
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ReprocessCheckpoint;
+import com.geomark.maritimemetrics.model.ReprocessJob;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+import com.geomark.maritimemetrics.util.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * This service recomputes the derived metrics, the validity flag and the data quality issues
+ * of stored points, e.g. after the derivation or the validation rules changed.
+ * <p>
+ * Vessel partitions are reprocessed in parallel with a bounded concurrency; within a partition
+ * the points are read in ascending timestamp order, so every point is derived and validated
+ * against its previous point as during the ingest. Only the points whose recomputed fields differ are written back, as
+ * single partition unlogged batches through the {@link WriteGovernor}. Reads are paced by a
+ * points per second limit, and every page is checkpointed per vessel so that a resumed job
+ * continues after the last checkpointed point.
+ * <p>
+ * Reprocessed points are validated without counting rule hits. The analytics sketch counters
+ * of the changed points are corrected by their difference once the page is written; counter
+ * updates are not idempotent, so the corrections of a page interrupted between its writes and
+ * its checkpoint are lost rather than applied twice.
+ */
+@Service
+@Slf4j
+public class ReprocessService {
+
+    private static final String UPDATE_DERIVED_FIELDS =
+            "UPDATE vessel_metrics SET actualspeed = ?, isvalid = ?, dataqualityissues = ? WHERE vessel_id = ? AND timestamp = ?";
+
+    private final ReactiveCassandraOperations cassandraOperations;
+
+    private final VesselProcessorService processorService;
+
+    private final VesselAnalyticsService analyticsService;
+
+    private final WriteGovernor writeGovernor;
+
+    private final ReprocessProperties properties;
+
+    private final RateLimiter rateLimiter;
+
+    private final Mono<PreparedStatement> updateStatement;
+
+    private final Map<UUID, Run> runs = new ConcurrentHashMap<>();
+
+    public ReprocessService(ReactiveCassandraOperations cassandraOperations,
+                            CqlSession session,
+                            VesselProcessorService processorService,
+                            VesselAnalyticsService analyticsService,
+                            WriteGovernor writeGovernor,
+                            ReprocessProperties properties) {
+        this.cassandraOperations = cassandraOperations;
+        this.processorService = processorService;
+        this.analyticsService = analyticsService;
+        this.writeGovernor = writeGovernor;
+        this.properties = properties;
+        this.rateLimiter = new RateLimiter(properties.getMaxPointsPerSecond());
+        // Prepared on first use, the table may not exist before the schema action ran
+        this.updateStatement = Mono.defer(() -> Mono.fromCompletionStage(session.prepareAsync(UPDATE_DERIVED_FIELDS))).cache();
+    }
+
+    /**
+     * Starts a reprocessing job over all vessel partitions.
+     *
+     * @return a Mono containing the new job
+     */
+    public Mono<ReprocessJob> start() {
+        ReprocessJob job = new ReprocessJob();
+        job.setJobId(UUID.randomUUID());
+        job.setStartedAt(Instant.now());
+        job.setVesselsDone(0L);
+        job.setPointsScanned(0L);
+        job.setPointsChanged(0L);
+        return run(job);
+    }
+
+    /**
+     * Resumes an interrupted reprocessing job. Finished vessels are skipped and partially
+     * processed vessels continue after their last checkpoint.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the resumed job
+     */
+    public Mono<ReprocessJob> resume(UUID jobId) {
+        Run running = runs.get(jobId);
+        if (running != null) {
+            return Mono.just(running.snapshot());
+        }
+        return cassandraOperations.selectOneById(jobId, ReprocessJob.class)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No reprocessing job " + jobId)))
+                .flatMap(job -> "COMPLETED".equals(job.getState()) ? Mono.just(job) : run(job));
+    }
+
+    /**
+     * Fetches the progress of a reprocessing job.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the job
+     */
+    public Mono<ReprocessJob> getJob(UUID jobId) {
+        Run running = runs.get(jobId);
+        if (running != null) {
+            return Mono.just(running.snapshot());
+        }
+        return cassandraOperations.selectOneById(jobId, ReprocessJob.class)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No reprocessing job " + jobId)));
+    }
+
+    private Mono<ReprocessJob> run(ReprocessJob job) {
+        Run run = new Run(job);
+        if (runs.putIfAbsent(job.getJobId(), run) != null) {
+            return Mono.just(runs.get(job.getJobId()).snapshot());
+        }
+
+        Mono<Map<String, ReprocessCheckpoint>> checkpoints = cassandraOperations
+                .select(Query.query(Criteria.where("job_id").is(job.getJobId())), ReprocessCheckpoint.class)
+                .collect(Collectors.toMap(ReprocessCheckpoint::getVesselId, Function.identity()));
+
+        Mono<ReprocessJob> work = checkpoints.flatMapMany(done -> vesselIds()
+                        .filter(vesselId -> done.get(vesselId) == null || !Boolean.TRUE.equals(done.get(vesselId).getDone()))
+                        .flatMap(vesselId -> reprocessVessel(run, vesselId, done.get(vesselId))
+                                .then(Mono.defer(() -> {
+                                    run.vesselsDone.incrementAndGet();
+                                    return saveJob(run, "RUNNING");
+                                })), properties.getVesselConcurrency()))
+                .then(Mono.defer(() -> saveJob(run, "COMPLETED")))
+                .onErrorResume(e -> {
+                    log.error("Reprocessing job {} failed, it can be resumed: {}", job.getJobId(), e.getMessage());
+                    return saveJob(run, "FAILED");
+                })
+                .doFinally(signal -> runs.remove(job.getJobId()));
+
+        // The job is persisted before the work starts, so its final state is never overwritten
+        return saveJob(run, "RUNNING")
+                .doOnSuccess(started -> work.subscribe(saved -> log.info("Reprocessing job {} {}: {} vessels, {} points scanned, {} changed, {} sketch corrections failed",
+                        saved.getJobId(), saved.getState(), saved.getVesselsDone(), saved.getPointsScanned(), saved.getPointsChanged(),
+                        run.sketchErrors.getCounts().values().stream().mapToLong(Long::longValue).sum())))
+                .doOnError(e -> runs.remove(job.getJobId()));
+    }
+
+    private Flux<String> vesselIds() {
+        return cassandraOperations.getReactiveCqlOperations()
+                .queryForFlux("SELECT DISTINCT vessel_id FROM vessel_metrics", String.class);
+    }
+
+    /**
+     * Reprocesses one vessel partition in ascending timestamp order, starting after the
+     * checkpoint if there is one.
+     */
+    private Mono<Void> reprocessVessel(Run run, String vesselId, ReprocessCheckpoint checkpoint) {
+        Instant after = checkpoint == null ? null : checkpoint.getLastTimestamp();
+        AtomicLong scanned = new AtomicLong(checkpoint == null || checkpoint.getPointsScanned() == null ? 0 : checkpoint.getPointsScanned());
+        AtomicLong changed = new AtomicLong(checkpoint == null || checkpoint.getPointsChanged() == null ? 0 : checkpoint.getPointsChanged());
+
+        // The last point before the checkpoint is the previous point of the first resumed point
+        Mono<List<VesselMetrics>> context = after == null
+                ? Mono.just(List.of())
+                : select("SELECT * FROM vessel_metrics WHERE vessel_id = ? AND timestamp <= ? LIMIT 1", vesselId, after)
+                .collectList();
+
+        Flux<VesselMetrics> points = after == null
+                ? select("SELECT * FROM vessel_metrics WHERE vessel_id = ? ORDER BY timestamp ASC", vesselId)
+                : select("SELECT * FROM vessel_metrics WHERE vessel_id = ? AND timestamp > ? ORDER BY timestamp ASC", vesselId, after);
+
+        return context.flatMap(previous -> {
+            VesselAnalyticsService.Accumulator sketches = analyticsService.newAccumulator(run.sketchErrors);
+            VesselReprocessor reprocessor = new VesselReprocessor(processorService, sketches, previous.isEmpty() ? null : previous.getFirst());
+            return points.buffer(properties.getPageSize())
+                    .concatMap(page -> Mono.delay(rateLimiter.reserve(page.size()))
+                            .then(Mono.defer(() -> {
+                                List<VesselMetrics> updates = reprocessor.recompute(page);
+                                scanned.addAndGet(page.size());
+                                changed.addAndGet(updates.size());
+                                run.pointsScanned.addAndGet(page.size());
+                                run.pointsChanged.addAndGet(updates.size());
+                                Instant last = page.get(page.size() - 1).getKey().getTimestamp();
+                                return writeUpdates(updates)
+                                        .then(Mono.defer(sketches::flush))
+                                        .then(saveCheckpoint(run, vesselId, last, false, scanned.get(), changed.get()));
+                            })))
+                    .then(Mono.defer(() -> saveCheckpoint(run, vesselId, reprocessor.lastTimestamp(), true, scanned.get(), changed.get())))
+                    .then();
+        });
+    }
+
+    private Flux<VesselMetrics> select(String cql, Object... args) {
+        return cassandraOperations.select(SimpleStatement.newInstance(cql, args).setPageSize(properties.getPageSize()), VesselMetrics.class);
+    }
+
+    /**
+     * Writes the recomputed fields of the changed points, in governed batches. All points of
+     * a page belong to one partition, so every batch is a single partition batch.
+     */
+    private Mono<Void> writeUpdates(List<VesselMetrics> updates) {
+        if (updates.isEmpty()) {
+            return Mono.empty();
+        }
+        return updateStatement.flatMap(statement -> Flux.fromIterable(updates)
+                .buffer(Math.max(1, writeGovernor.getBatchSize()))
+                .concatMap(batch -> writeGovernor.execute(() -> {
+                    List<BoundStatement> statements = new ArrayList<>(batch.size());
+                    for (VesselMetrics metric : batch) {
+                        statements.add(statement.bind(metric.getActualSpeed(), metric.getIsvalid(),
+                                issueNames(metric.getDataQualityIssues()),
+                                metric.getKey().getVesselId(), metric.getKey().getTimestamp()));
+                    }
+                    return cassandraOperations.getReactiveCqlOperations()
+                            .execute(BatchStatement.newInstance(BatchType.UNLOGGED).addAll(statements));
+                }))
+                .then());
+    }
+
+    private Mono<ReprocessCheckpoint> saveCheckpoint(Run run, String vesselId, Instant lastTimestamp, boolean done, long scanned, long changed) {
+        ReprocessCheckpoint checkpoint = new ReprocessCheckpoint();
+        checkpoint.setJobId(run.jobId);
+        checkpoint.setVesselId(vesselId);
+        checkpoint.setLastTimestamp(lastTimestamp);
+        checkpoint.setDone(done);
+        checkpoint.setPointsScanned(scanned);
+        checkpoint.setPointsChanged(changed);
+        return cassandraOperations.insert(checkpoint);
+    }
+
+    private Mono<ReprocessJob> saveJob(Run run, String state) {
+        run.state = state;
+        return cassandraOperations.insert(run.snapshot());
+    }
+
+    private static List<String> issueNames(List<DataQualityIssue> issues) {
+        return issues == null ? List.of() : issues.stream().map(Enum::name).toList();
+    }
+
+    /**
+     * Recomputes the points of one vessel page by page, each against the previous point of
+     * the partition, and records the sketch corrections of the changed points.
+     */
+    static final class VesselReprocessor {
+
+        private final VesselProcessorService.Sequence sequence;
+
+        private final VesselAnalyticsService.Accumulator sketches;
+
+        private VesselMetrics previous;
+
+        private Instant lastTimestamp;
+
+        VesselReprocessor(VesselProcessorService processorService, VesselAnalyticsService.Accumulator sketches, VesselMetrics previous) {
+            this.sequence = processorService.newRevalidationSequence();
+            this.sketches = sketches;
+            this.previous = previous;
+            if (previous != null) {
+                sequence.after(previous);
+                lastTimestamp = previous.getKey().getTimestamp();
+            }
+        }
+
+        /**
+         * Recomputes a page of points given in ascending timestamp order.
+         *
+         * @param page the stored points
+         * @return the points whose recomputed fields differ from the stored ones
+         */
+        List<VesselMetrics> recompute(List<VesselMetrics> page) {
+            List<VesselMetrics> changed = new ArrayList<>();
+            for (VesselMetrics point : page) {
+                Double actualSpeed = point.getActualSpeed();
+                Boolean isvalid = point.getIsvalid();
+                List<DataQualityIssue> issues = point.getDataQualityIssues();
+
+                sequence.process(point);
+                lastTimestamp = point.getKey().getTimestamp();
+
+                if (!Objects.equals(actualSpeed, point.getActualSpeed())
+                        || !Objects.equals(isvalid, point.getIsvalid())
+                        || !issueNames(issues).equals(issueNames(point.getDataQualityIssues()))) {
+                    changed.add(point);
+                    sketches.recordChange(point, actualSpeed, isvalid, previous);
+                }
+                previous = point;
+            }
+            return changed;
+        }
+
+        Instant lastTimestamp() {
+            return lastTimestamp;
+        }
+    }
+
+    private static final class Run {
+
+        private final UUID jobId;
+
+        private final Instant startedAt;
+
+        private final AtomicLong vesselsDone;
+
+        private final AtomicLong pointsScanned;
+
+        private final AtomicLong pointsChanged;
+
+        private final ErrorCapture sketchErrors = new ErrorCapture();
+
+        private volatile String state = "RUNNING";
+
+        private Run(ReprocessJob job) {
+            this.jobId = job.getJobId();
+            this.startedAt = job.getStartedAt();
+            this.vesselsDone = new AtomicLong(Objects.requireNonNullElse(job.getVesselsDone(), 0L));
+            this.pointsScanned = new AtomicLong(Objects.requireNonNullElse(job.getPointsScanned(), 0L));
+            this.pointsChanged = new AtomicLong(Objects.requireNonNullElse(job.getPointsChanged(), 0L));
+        }
+
+        private ReprocessJob snapshot() {
+            ReprocessJob job = new ReprocessJob();
+            job.setJobId(jobId);
+            job.setState(state);
+            job.setStartedAt(startedAt);
+            job.setUpdatedAt(Instant.now());
+            job.setVesselsDone(vesselsDone.get());
+            job.setPointsScanned(pointsScanned.get());
+            job.setPointsChanged(pointsChanged.get());
+            return job;
+        }
+    }
+}
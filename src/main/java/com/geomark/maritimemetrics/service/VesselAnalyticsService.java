@@ -0,0 +1,208 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.AnalyticsProperties;
+import com.geomark.maritimemetrics.exceptions.DataProcessingException;
+import com.geomark.maritimemetrics.model.VesselAnalytics;
+import com.geomark.maritimemetrics.model.VesselDaySketch;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselSketchCounter;
+import com.geomark.maritimemetrics.repository.VesselSketchCounterReactiveRepository;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+import com.geomark.maritimemetrics.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.Criteria;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.cassandra.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This service keeps per vessel and day analytics sketches up to date during ingest and
+ * answers analytics queries by merging the daily sketches of a range, so a query costs
+ * O(days) instead of O(points).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VesselAnalyticsService {
+
+    private final VesselSketchCounterReactiveRepository sketchRepository;
+
+    private final ReactiveCassandraOperations cassandraOperations;
+
+    private final WriteGovernor writeGovernor;
+
+    private final AnalyticsProperties properties;
+
+    /**
+     * Creates an accumulator for one ingest.
+     *
+     * @param errors the error capture of the ingest, which receives failed counter updates
+     * @return a new accumulator
+     */
+    public Accumulator newAccumulator(ErrorCapture errors) {
+        return new Accumulator(errors);
+    }
+
+    /**
+     * Fetches the fuel efficiency and speed distribution of a vessel over a range of days.
+     *
+     * @param vesselId the ID of the vessel
+     * @param from     the first day of the range
+     * @param to       the last day of the range
+     * @return a Mono containing the analytics of the vessel
+     */
+    public Mono<VesselAnalytics> getVesselAnalytics(String vesselId, LocalDate from, LocalDate to) {
+        return sketchRepository.fetchByVesselIdAndDayBetween(vesselId, from, to)
+                .reduceWith(VesselDaySketch::new, (sketch, counter) -> {
+                    sketch.add(VesselDaySketch.Component.valueOf(counter.getKey().getComponent()),
+                            counter.getKey().getBucket(), counter.getValue());
+                    return sketch;
+                })
+                .map(sketch -> VesselAnalytics.of(vesselId, from, to, sketch));
+    }
+
+    private Mono<Boolean> increment(String vesselId, LocalDate day, VesselDaySketch.Component component, int bucket, long delta) {
+        Query query = Query.query(
+                Criteria.where("vessel_id").is(vesselId),
+                Criteria.where("day").is(day),
+                Criteria.where("component").is(component.name()),
+                Criteria.where("bucket").is(bucket));
+        return cassandraOperations.update(query, Update.empty().increment("value", delta), VesselSketchCounter.class);
+    }
+
+    /**
+     * Accumulates the sketches of one ingest in memory and adds them to the stored counters.
+     * Only written points are recorded, in the order of the ingested file. Counter updates
+     * are not idempotent and are never retried; failed updates are recorded as ingest errors.
+     */
+    public class Accumulator {
+
+        private final Map<SketchKey, VesselDaySketch> open = new HashMap<>();
+
+        private final Map<String, VesselMetrics> lastByVessel = new HashMap<>();
+
+        private final ErrorCapture errors;
+
+        private Accumulator(ErrorCapture errors) {
+            this.errors = errors;
+        }
+
+        /**
+         * Records a batch of written points. Once too many sketches are open they are
+         * flushed before the batch is passed on.
+         *
+         * @param written the written points
+         * @return a Mono emitting the batch
+         */
+        public synchronized Mono<List<VesselMetrics>> record(List<VesselMetrics> written) {
+            if (!properties.isEnabled()) {
+                return Mono.just(written);
+            }
+            written.forEach(this::recordPoint);
+
+            if (open.size() >= properties.getMaxOpenSketches()) {
+                return flush().thenReturn(written);
+            }
+            return Mono.just(written);
+        }
+
+        private void recordPoint(VesselMetrics metric) {
+            String vesselId = metric.getKey().getVesselId();
+            VesselMetrics previous = lastByVessel.put(vesselId, metric);
+            if (previous != null && previous.getKey().equals(metric.getKey())) {
+                // The trailing windows of the ingest repeat the last point of the file
+                return;
+            }
+
+            if (Boolean.TRUE.equals(metric.getIsvalid())) {
+                contribute(sketchOf(metric), metric, metric.getActualSpeed(), previous);
+            }
+        }
+
+        /**
+         * Corrects the counters for a stored point whose derived fields were recomputed, e.g.
+         * by a reprocessing job: the contribution of its stored fields is taken out and the
+         * one of its new fields added. A point only contributes while it is valid, with its
+         * speed deviation and the leg from the previous point; the legs of the following
+         * points do not depend on it, so no other point needs a correction.
+         *
+         * @param point     the recomputed point
+         * @param oldSpeed  the stored actual speed of the point
+         * @param wasValid  the stored validity flag of the point
+         * @param previous  the previous stored point of the vessel, or null
+         */
+        public synchronized void recordChange(VesselMetrics point, Double oldSpeed, Boolean wasValid, VesselMetrics previous) {
+            if (!properties.isEnabled()) {
+                return;
+            }
+            VesselDaySketch delta = new VesselDaySketch();
+            if (Boolean.TRUE.equals(point.getIsvalid())) {
+                contribute(delta, point, point.getActualSpeed(), previous);
+            }
+            if (Boolean.TRUE.equals(wasValid)) {
+                VesselDaySketch stored = new VesselDaySketch();
+                contribute(stored, point, oldSpeed, previous);
+                delta.subtract(stored);
+            }
+            sketchOf(point).merge(delta);
+        }
+
+        private VesselDaySketch sketchOf(VesselMetrics metric) {
+            LocalDate day = LocalDate.ofInstant(metric.getKey().getTimestamp(), ZoneOffset.UTC);
+            return open.computeIfAbsent(new SketchKey(metric.getKey().getVesselId(), day), key -> new VesselDaySketch());
+        }
+
+        private void contribute(VesselDaySketch sketch, VesselMetrics metric, Double actualSpeed, VesselMetrics previous) {
+            double deviation = actualSpeed != null && metric.getProposedSpeed() != null
+                    ? actualSpeed - metric.getProposedSpeed()
+                    : Double.NaN;
+            sketch.recordPoint(deviation, metric.getFuelConsumption());
+
+            if (previous != null && previous.getLatitude() != null && previous.getLongitude() != null
+                    && metric.getLatitude() != null && metric.getLongitude() != null) {
+                long seconds = metric.getKey().getTimestamp().getEpochSecond() - previous.getKey().getTimestamp().getEpochSecond();
+                if (seconds > 0 && seconds <= properties.getMaxLegDuration().toSeconds()) {
+                    double distanceKm = GeoUtils.distanceKm(previous.getLatitude(), previous.getLongitude(),
+                            metric.getLatitude(), metric.getLongitude());
+                    double knots = distanceKm / GeoUtils.KM_PER_NAUTICAL_MILE / (seconds / 3600.0);
+                    sketch.recordLeg(distanceKm, seconds, knots);
+                }
+            }
+        }
+
+        /**
+         * Adds the open sketches to the stored counters and clears them.
+         *
+         * @return a Mono that completes when the counters have been written
+         */
+        public synchronized Mono<Void> flush() {
+            List<Mono<Boolean>> increments = new ArrayList<>();
+            open.forEach((key, sketch) -> sketch.forEachCounter((component, bucket, value) ->
+                    increments.add(Mono.defer(() -> increment(key.vesselId(), key.day(), component, bucket, value)))));
+            open.clear();
+
+            return Flux.fromIterable(increments)
+                    .flatMap(increment -> writeGovernor.execute(() -> increment)
+                            .onErrorResume(e -> {
+                                log.error("Error updating vessel sketch: {}", e.getMessage());
+                                errors.record(new DataProcessingException("Analytics counter update failed: " + e.getMessage(), e));
+                                return Mono.empty();
+                            }), writeGovernor.getMaxConcurrency())
+                    .then();
+        }
+    }
+
+    private record SketchKey(String vesselId, LocalDate day) {
+    }
+}
@@ -0,0 +1,132 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.BatchQueryProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsGroup;
+import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This service answers metrics queries for many vessels at once. Partition reads are fanned out
+ * with a bounded concurrency and the results are streamed back either grouped per vessel or as
+ * one stream merged by timestamp.
+ */
+@Service
+@RequiredArgsConstructor
+public class VesselBatchQueryService {
+
+    private final VesselMetricsReactiveRepository reactiveRepository;
+
+    private final BatchQueryProperties properties;
+
+    /**
+     * Fetches the metrics of several vessels, one group per vessel in the requested vessel order.
+     *
+     * @param vesselIds the IDs of the vessels
+     * @param from      the start of the time range
+     * @param to        the end of the time range
+     * @return a Flux of VesselMetricsGroup objects
+     */
+    public Flux<VesselMetricsGroup> getGroupedVesselMetrics(List<String> vesselIds, Instant from, Instant to) {
+        return Flux.fromIterable(validate(vesselIds, from, to))
+                .flatMapSequential(vesselId -> reactiveRepository.fetchByVesselIdAndTimestampBetween(vesselId, from, to)
+                        .collectList()
+                        .map(metrics -> new VesselMetricsGroup(vesselId, metrics)), properties.getConcurrency());
+    }
+
+    /**
+     * Fetches the metrics of several vessels as one stream in ascending timestamp order.
+     * The time range is read slice by slice; within a slice the partitions are read with a
+     * bounded concurrency and k-way merged.
+     *
+     * @param vesselIds the IDs of the vessels
+     * @param from      the start of the time range
+     * @param to        the end of the time range
+     * @return a Flux of VesselMetrics objects ordered by timestamp
+     */
+    public Flux<VesselMetrics> getMergedVesselMetrics(List<String> vesselIds, Instant from, Instant to) {
+        List<String> vessels = validate(vesselIds, from, to);
+        return Flux.fromIterable(slices(from, to))
+                .concatMap(slice -> Flux.fromIterable(vessels)
+                        .flatMap(vesselId -> reactiveRepository
+                                .fetchByVesselIdAndTimestampBetween(vesselId, slice[0], slice[1])
+                                .collectList(), properties.getConcurrency())
+                        .collectList()
+                        .flatMapIterable(VesselBatchQueryService::mergeByTimestamp));
+    }
+
+    /**
+     * Checks a batch query and returns its distinct vessels in the requested order.
+     */
+    private List<String> validate(List<String> vesselIds, Instant from, Instant to) {
+        if (vesselIds == null || vesselIds.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At least one vessel is required");
+        }
+        if (from == null || to == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The time range requires both from and to");
+        }
+        List<String> vessels = new ArrayList<>(new LinkedHashSet<>(vesselIds));
+        if (vessels.size() > properties.getMaxVessels()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + properties.getMaxVessels() + " vessels can be queried at once");
+        }
+        return vessels;
+    }
+
+    /**
+     * Splits [from, to] into consecutive, non-overlapping inclusive slices.
+     */
+    private List<Instant[]> slices(Instant from, Instant to) {
+        List<Instant[]> slices = new ArrayList<>();
+        Instant start = from;
+        while (!start.isAfter(to)) {
+            Instant next = start.plus(properties.getMergeSlice());
+            Instant end = next.isAfter(to) ? to : next.minusMillis(1);
+            slices.add(new Instant[]{start, end});
+            start = next;
+        }
+        return slices;
+    }
+
+    /**
+     * K-way merges per vessel result lists, each in descending timestamp order as stored,
+     * into a single list in ascending timestamp order.
+     *
+     * @param partitions the result lists of the partitions
+     * @return the merged list
+     */
+    static List<VesselMetrics> mergeByTimestamp(List<List<VesselMetrics>> partitions) {
+        int total = 0;
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, partitions.size()),
+                Comparator.comparing((int[] head) -> partitions.get(head[0]).get(head[1]).getKey().getTimestamp()));
+        for (int i = 0; i < partitions.size(); i++) {
+            List<VesselMetrics> partition = partitions.get(i);
+            total += partition.size();
+            if (!partition.isEmpty()) {
+                heads.add(new int[]{i, partition.size() - 1});
+            }
+        }
+
+        List<VesselMetrics> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            merged.add(partitions.get(head[0]).get(head[1]));
+            if (head[1] > 0) {
+                head[1]--;
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,417 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+import com.datastax.oss.driver.api.core.metadata.TokenMap;
+import com.geomark.maritimemetrics.config.ExportProperties;
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ExportFormat;
+import com.geomark.maritimemetrics.model.ExportProgress;
+import com.geomark.maritimemetrics.model.ExportRequest;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.util.ExportWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.cql.ReactiveCqlOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * This service exports the vessel_metrics table, or a time slice of it, to a local file.
+ * <p>
+ * The Murmur3 token ring is split into equal ranges that are scanned in parallel with paging
+ * and a bounded concurrency. Every range is written to its own gzip part file and recorded in
+ * a checkpoint file once complete, so an interrupted export resumes with the missing ranges
+ * only. When all ranges are done the parts are concatenated, in ring order, into the export file.
+ */
+@Service
+@Slf4j
+public class VesselExportService {
+
+    private static final String COLUMNS = "vessel_id, timestamp, latitude, longitude, actualspeed, proposedspeed, "
+            + "fuelconsumption, enginerpm, isvalid, dataqualityissues";
+
+    private static final String JOB_FILE = "export.properties";
+
+    private static final String CHECKPOINT_FILE = "ranges.done";
+
+    private final ReactiveCqlOperations cql;
+
+    private final CqlSession session;
+
+    private final Scheduler blockingScheduler;
+
+    private final ExportProperties properties;
+
+    private final Map<String, Export> exports = new ConcurrentHashMap<>();
+
+    public VesselExportService(ReactiveCassandraOperations cassandraOperations, CqlSession session,
+                               Scheduler blockingScheduler, ExportProperties properties) {
+        this.cql = cassandraOperations.getReactiveCqlOperations();
+        this.session = session;
+        this.blockingScheduler = blockingScheduler;
+        this.properties = properties;
+    }
+
+    /**
+     * Starts a new export.
+     *
+     * @param request the format and optional time slice of the export
+     * @return the initial progress of the export
+     */
+    public ExportProgress start(ExportRequest request) {
+        if ((request.from() == null) != (request.to() == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either both or none of from and to are required");
+        }
+        ExportFormat format = request.format() == null ? ExportFormat.CSV_GZIP : request.format();
+        Instant from = request.from() == null ? null : request.from().toInstant(ZoneOffset.UTC);
+        Instant to = request.to() == null ? null : request.to().toInstant(ZoneOffset.UTC);
+
+        Export export = new Export(UUID.randomUUID().toString(), format, from, to, properties.getSplits(), Set.of());
+        try {
+            Files.createDirectories(partsDirectory(export.id));
+            Properties job = new Properties();
+            job.setProperty("format", format.name());
+            job.setProperty("splits", Integer.toString(export.splits));
+            if (from != null) {
+                job.setProperty("from", from.toString());
+                job.setProperty("to", to.toString());
+            }
+            try (OutputStream out = Files.newOutputStream(partsDirectory(export.id).resolve(JOB_FILE))) {
+                job.store(out, "vessel_metrics export");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return run(export);
+    }
+
+    /**
+     * Resumes an interrupted or failed export with the token ranges that are not written yet.
+     *
+     * @param exportId the ID of the export
+     * @return the progress of the resumed export
+     */
+    public ExportProgress resume(String exportId) {
+        checkExportId(exportId);
+        Export running = exports.get(exportId);
+        if (running != null && "RUNNING".equals(running.state)) {
+            return running.progress();
+        }
+        Path directory = partsDirectory(exportId);
+        if (!Files.isDirectory(directory)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No resumable export " + exportId);
+        }
+        try {
+            Properties job = new Properties();
+            try (InputStream in = Files.newInputStream(directory.resolve(JOB_FILE))) {
+                job.load(in);
+            }
+            String from = job.getProperty("from");
+            String to = job.getProperty("to");
+            Export export = new Export(exportId,
+                    ExportFormat.valueOf(job.getProperty("format")),
+                    from == null ? null : Instant.parse(from),
+                    to == null ? null : Instant.parse(to),
+                    Integer.parseInt(job.getProperty("splits")),
+                    completedRanges(directory));
+            log.info("Resuming export {} with {} of {} ranges done", exportId, export.done.size(), export.splits);
+            return run(export);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the progress of an export, including exports of earlier runs of the application.
+     *
+     * @param exportId the ID of the export
+     * @return the progress of the export
+     */
+    public ExportProgress getProgress(String exportId) {
+        checkExportId(exportId);
+        Export export = exports.get(exportId);
+        if (export != null) {
+            return export.progress();
+        }
+        for (ExportFormat format : ExportFormat.values()) {
+            Path file = exportFile(exportId, format);
+            if (Files.exists(file)) {
+                return new ExportProgress(exportId, format, "COMPLETED", 0, 0, 0, 0, 0, file.toString());
+            }
+        }
+        Path directory = partsDirectory(exportId);
+        if (Files.isDirectory(directory)) {
+            try {
+                return new ExportProgress(exportId, null, "INTERRUPTED", 0, completedRanges(directory).size(), 0, 0, 0, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No export " + exportId);
+    }
+
+    private ExportProgress run(Export export) {
+        exports.put(export.id, export);
+        evictFinishedExports();
+        List<Integer> pending = new ArrayList<>();
+        for (int range = 0; range < export.splits; range++) {
+            if (!export.done.contains(range)) {
+                pending.add(range);
+            }
+        }
+
+        Flux.fromIterable(pending)
+                .flatMap(range -> exportRange(export, range), properties.getConcurrency())
+                .then(Mono.fromCallable(() -> assemble(export)).subscribeOn(blockingScheduler))
+                .subscribe(file -> {
+                    export.state = "COMPLETED";
+                    export.file = file.toString();
+                    log.info("Completed export {}: {} rows, {} bytes in {} ms", export.id, export.rows.sum(),
+                            export.bytes.sum(), System.currentTimeMillis() - export.startedAt);
+                }, e -> {
+                    export.state = "FAILED";
+                    log.error("Export {} failed, it can be resumed: {}", export.id, e.getMessage());
+                });
+        return export.progress();
+    }
+
+    private void evictFinishedExports() {
+        List<Export> finished = exports.values().stream()
+                .filter(export -> !"RUNNING".equals(export.state))
+                .sorted(Comparator.comparingLong((Export export) -> export.startedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - properties.getRetainedExports(); i++) {
+            exports.remove(finished.get(i).id);
+        }
+    }
+
+    /**
+     * Scans one token range into its part file and records it in the checkpoint file.
+     */
+    private Mono<Void> exportRange(Export export, int range) {
+        long[] bounds = tokenRange(range, export.splits);
+        Path part = partFile(export, range);
+
+        return Mono.fromCallable(() -> ExportWriter.open(export.format, Files.newOutputStream(part),
+                        range == 0, properties.getColumnarBlockRows()))
+                .subscribeOn(blockingScheduler)
+                .flatMap(writer -> cql.queryForRows(rangeStatement(export, bounds))
+                        .map(VesselExportService::toMetrics)
+                        .buffer(properties.getPageSize())
+                        .concatMap(rows -> Mono.fromCallable(() -> {
+                            for (VesselMetrics row : rows) {
+                                writer.write(row);
+                            }
+                            export.rows.add(rows.size());
+                            return rows.size();
+                        }).subscribeOn(blockingScheduler))
+                        .then(Mono.fromCallable(() -> {
+                            writer.close();
+                            export.bytes.add(Files.size(part));
+                            checkpoint(export, range);
+                            return range;
+                        }).subscribeOn(blockingScheduler))
+                        .doOnError(e -> closeQuietly(writer)))
+                .doOnNext(done -> log.debug("Export {}: range {} of {} done", export.id, export.rangesDone.get(), export.splits))
+                .then();
+    }
+
+    private SimpleStatement rangeStatement(Export export, long[] bounds) {
+        String query = "SELECT " + COLUMNS + " FROM vessel_metrics WHERE token(vessel_id) > ? AND token(vessel_id) <= ?";
+        SimpleStatement statement = export.from == null
+                ? SimpleStatement.newInstance(query, bounds[0], bounds[1])
+                : SimpleStatement.newInstance(query + " AND timestamp >= ? AND timestamp <= ? ALLOW FILTERING",
+                bounds[0], bounds[1], export.from, export.to);
+
+        // Route every range scan to a replica that owns the range
+        Optional<TokenMap> tokenMap = session.getMetadata().getTokenMap();
+        if (tokenMap.isPresent()) {
+            statement = statement.setRoutingToken(tokenMap.get().parse(Long.toString(bounds[1])));
+        }
+        return statement.setPageSize(properties.getPageSize());
+    }
+
+    private synchronized void checkpoint(Export export, int range) throws IOException {
+        Files.writeString(partsDirectory(export.id).resolve(CHECKPOINT_FILE), range + "\n", StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        export.rangesDone.incrementAndGet();
+    }
+
+    /**
+     * Concatenates the part files, which are complete gzip members, into the export file.
+     */
+    private Path assemble(Export export) throws IOException {
+        Path file = exportFile(export.id, export.format);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            for (int range = 0; range < export.splits; range++) {
+                Files.copy(partFile(export, range), out);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+
+        try (Stream<Path> parts = Files.list(partsDirectory(export.id))) {
+            for (Path part : parts.toList()) {
+                Files.delete(part);
+            }
+        }
+        Files.delete(partsDirectory(export.id));
+        return file;
+    }
+
+    /**
+     * Export IDs end up in file paths, so only UUIDs are accepted.
+     */
+    private static void checkExportId(String exportId) {
+        try {
+            UUID.fromString(exportId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid export ID " + exportId);
+        }
+    }
+
+    private static Set<Integer> completedRanges(Path directory) throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        Set<Integer> done = new HashSet<>();
+        if (Files.exists(checkpoint)) {
+            for (String line : Files.readAllLines(checkpoint, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    done.add(Integer.parseInt(line.trim()));
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Returns the bounds (start exclusive, end inclusive) of a range of the Murmur3 token ring
+     * split into equal ranges. The ranges are contiguous and cover the whole ring.
+     *
+     * @param range  the index of the range
+     * @param splits the number of ranges
+     * @return the start and end token of the range
+     */
+    static long[] tokenRange(int range, int splits) {
+        long step = Long.divideUnsigned(-1L, splits);
+        long start = Long.MIN_VALUE + step * range;
+        long end = range == splits - 1 ? Long.MAX_VALUE : start + step;
+        return new long[]{start, end};
+    }
+
+    private static VesselMetrics toMetrics(Row row) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(row.getString("vessel_id"));
+        key.setTimestamp(row.getInstant("timestamp"));
+
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setLatitude(row.get("latitude", Double.class));
+        metric.setLongitude(row.get("longitude", Double.class));
+        metric.setActualSpeed(row.get("actualspeed", Double.class));
+        metric.setProposedSpeed(row.get("proposedspeed", Double.class));
+        metric.setFuelConsumption(row.get("fuelconsumption", Double.class));
+        metric.setEngineRpm(row.get("enginerpm", Double.class));
+        metric.setIsvalid(row.get("isvalid", Boolean.class));
+        List<String> issues = row.getList("dataqualityissues", String.class);
+        if (issues != null && !issues.isEmpty()) {
+            metric.setDataQualityIssues(issues.stream().map(DataQualityIssue::valueOf).toList());
+        }
+        return metric;
+    }
+
+    private Path partsDirectory(String exportId) {
+        return Path.of(properties.getDirectory(), exportId);
+    }
+
+    private Path partFile(Export export, int range) {
+        return partsDirectory(export.id).resolve(String.format("part-%05d.%s", range, export.format.getExtension()));
+    }
+
+    private Path exportFile(String exportId, ExportFormat format) {
+        return Path.of(properties.getDirectory(), exportId + "." + format.getExtension());
+    }
+
+    private static void closeQuietly(ExportWriter writer) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.debug("Error closing export writer: {}", e.getMessage());
+        }
+    }
+
+    private static final class Export {
+
+        private final String id;
+
+        private final ExportFormat format;
+
+        private final Instant from;
+
+        private final Instant to;
+
+        private final int splits;
+
+        private final Set<Integer> done;
+
+        private final AtomicInteger rangesDone;
+
+        private final LongAdder rows = new LongAdder();
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final long startedAt = System.currentTimeMillis();
+
+        private volatile String state = "RUNNING";
+
+        private volatile String file;
+
+        private Export(String id, ExportFormat format, Instant from, Instant to, int splits, Set<Integer> done) {
+            this.id = id;
+            this.format = format;
+            this.from = from;
+            this.to = to;
+            this.splits = splits;
+            this.done = done;
+            this.rangesDone = new AtomicInteger(done.size());
+        }
+
+        private ExportProgress progress() {
+            long rowCount = rows.sum();
+            long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+            return new ExportProgress(id, format, state, splits, rangesDone.get(), rowCount, bytes.sum(),
+                    rowCount * 1000 / elapsed, file);
+        }
+    }
+}
@@ -2,37 +2,45 @@ package com.geomark.maritimemetrics.service;
 
 import com.geomark.maritimemetrics.exceptions.DataProcessingException;
 import com.geomark.maritimemetrics.model.DataQualityIssue;
-import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.ExportProgress;
+import com.geomark.maritimemetrics.model.ExportRequest;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.IngestProgress;
+import com.geomark.maritimemetrics.model.ReprocessJob;
 import com.geomark.maritimemetrics.model.SpeedDifference;
+import com.geomark.maritimemetrics.model.ValidationRule;
+import com.geomark.maritimemetrics.model.VesselAnalytics;
 import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsGroup;
 import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
-import com.geomark.maritimemetrics.repository.VesselMetricsRepository;
 import com.geomark.maritimemetrics.util.CSVReaderProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.cassandra.core.query.CassandraPageRequest;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.ParallelFlux;
 import reactor.core.scheduler.Scheduler;
-import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -45,97 +53,108 @@ public class VesselMetricsService {
 
     private final VesselMetricsReactiveRepository reactiveRepository;
 
-    private final VesselMetricsRepository repository;
+    private final IngestPipeline ingestPipeline;
 
-    private final VesselProcessorService processorService;
+    private final DistributedIngestService distributedIngestService;
 
-    private final VesselParserService  parserService;
+    private final IngestJobService jobService;
 
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final VesselAnalyticsService analyticsService;
 
-    /**
-     * Processes the CSV file and saves the metrics to the database.
-     *
-     * @param csvFile the CSV file to process
-     * @return a Mono containing the count of processed metrics
-     * @throws IOException if an error occurs while reading the file
-     */
-    @Async
-    public void processAndSaveMetrics(MultipartFile csvFile) throws IOException {
-        Scheduler s = Schedulers.newParallel("parallel-scheduler", 4);
-
-        // Read the CSV file and convert it to a list of VesselMetrics objects
+    private final VesselBatchQueryService batchQueryService;
 
-        AtomicLong counter = new AtomicLong(0);
-        AtomicLong errorCounter = new AtomicLong(0);
-        AtomicLong completiontime = new AtomicLong(System.currentTimeMillis());
-        List<String> errors = new ArrayList<>();
+    private final VesselMetricsValidationService validationService;
 
-        ImportResult asyncRes = new ImportResult(
-                counter,
-                errorCounter,
-                completiontime,
-                errors);
-        
-        
-        Flux<List<VesselMetrics>> fl = CSVReaderProvider.ofReader(csvFile)
-                .map(parserService::parseMetrics)
-                .filter(metric -> metric.getKey() != null)
-                .buffer(10, 1)
+    private final VesselExportService exportService;
 
-                .onErrorContinue((throwable, o) -> {
-                            asyncRes.ingestionErrors().incrementAndGet();
-                            asyncRes.errorMessages().add(throwable.getMessage());
-                            log.error("Error processing line: {}", o);
-                            log.error("Error message: {}", throwable.getMessage());
-                        })
-                .doOnEach( signal -> {
-                    if (signal.isOnNext()) {
-                        long count = asyncRes.validRecords().incrementAndGet();
-                        log.info("Processed {} lines", count);
-                    }
-                })
-                .doOnComplete(() -> {
-                    stompResponse( asyncRes);
-                });
+    private final ReprocessService reprocessService;
 
+    private final Scheduler blockingScheduler;
 
-        fl.subscribe(processorService);
+    /**
+     * Processes the CSV file and saves the metrics to the database.
+     * The ingest runs in the background and is tracked as an ingest job; opening the upload
+     * runs on the blocking scheduler, and the pipeline reads and parses it there as well.
+     *
+     * @param csvFile the CSV file to process
+     * @return a Mono containing the initial progress of the ingest job
+     */
+    public Mono<IngestProgress> processAndSaveMetrics(MultipartFile csvFile) {
+        // Opened before the response, the upload may be cleaned up once the request completed
+        return blocking(csvFile::getInputStream).flatMap(input -> {
+            if (distributedIngestService.isEnabled()) {
+                // Large uploads are split into work units that every instance of the cluster can claim
+                return distributedIngestService.submit(input)
+                        .map(jobId -> {
+                            log.info("Submitted distributed ingest job {}", jobId);
+                            // Runs until the units are finished, see DistributedIngestService.refreshJobs
+                            jobService.register(jobId, csvFile.getOriginalFilename(), csvFile.getSize()).distribute();
+                            return jobService.getProgress(jobId);
+                        });
+            }
+
+            IngestJobService.Job job = jobService.register(csvFile.getOriginalFilename(), csvFile.getSize());
+            ingestPipeline.run(Flux.defer(() -> CSVReaderProvider.ofStream(job.track(input))), job)
+                    .subscribe(ingestPipeline::announce, e -> {
+                        // Also reached when the blocking scheduler rejected the job, before the upload was opened
+                        closeQuietly(input);
+                        job.getResult().errors().record(e);
+                        job.finish(IngestJobState.FAILED);
+                        log.error("Ingest job {} failed: {}", job.getId(), e.getMessage());
+                    });
+            return Mono.fromSupplier(() -> jobService.getProgress(job.getId()));
+        });
     }
 
-
-
-
-    private ImportResult stompResponse(ImportResult asyncRes) {
-
-        log.info("Completed processing {} lines", asyncRes.validRecords().get());
-        log.info("Completed processing metrics in {} milliseconds", asyncRes.totalTimeElapsed().get());
-        log.info("Total errors: {}",asyncRes.ingestionErrors().get());
-
-
-        simpMessagingTemplate.convertAndSend("/topic/ingestionResults", asyncRes);
-
-        return asyncRes;
+    /**
+     * Fetches the progress of the ingest jobs of this instance, most recent first.
+     *
+     * @return a Flux of IngestProgress objects
+     */
+    public Flux<IngestProgress> getIngestJobs() {
+        return Flux.defer(() -> Flux.fromIterable(jobService.getJobs()));
     }
 
+    /**
+     * Fetches the progress of an ingest job.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the progress of the job
+     */
+    public Mono<IngestProgress> getIngestJob(UUID jobId) {
+        return Mono.fromSupplier(() -> jobService.getProgress(jobId));
+    }
 
-
+    /**
+     * Cancels a running ingest job. A distributed job is cancelled on all instances through
+     * its work units.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the progress of the job
+     */
+    public Mono<IngestProgress> cancelIngestJob(UUID jobId) {
+        return Mono.fromSupplier(() -> jobService.getProgress(jobId))
+                .flatMap(progress -> progress.state() != IngestJobState.DISTRIBUTED
+                        ? Mono.fromSupplier(() -> jobService.cancel(jobId))
+                        : distributedIngestService.cancel(jobId)
+                                .map(cancelled -> cancelled ? jobService.cancel(jobId) : jobService.getProgress(jobId)));
+    }
 
 
     /**
      * Fetches the speed differences for a given vessel.
      *
      * @param vesselId the ID of the vessel
-     * @return a Slice of SpeedDifference objects
+     * @return a Mono containing a Slice of SpeedDifference objects
      */
-    public Slice<SpeedDifference> getSpeedDifferences(String vesselId, int page, int size, Sort.Direction sort) {
+    public Mono<Slice<SpeedDifference>> getSpeedDifferences(String vesselId, int page, int size, Sort.Direction sort) {
         CassandraPageRequest pageable = CassandraPageRequest.of(page, size, sort, "timestamp");
 
-        return repository.fetchValidByVesselId(vesselId, pageable)
-                .map(metric -> new SpeedDifference(
+        return reactiveRepository.fetchValidByVesselId(vesselId, pageable)
+                .map(slice -> slice.map(metric -> new SpeedDifference(
                         metric.getKey().getTimestamp(),
                         metric.getActualSpeed() - metric.getProposedSpeed()
-                ));
+                )));
 
     }
 
@@ -194,4 +213,127 @@ public class VesselMetricsService {
             return reactiveRepository.fetchValidByVesselId(vesselId);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Fetches the number of points flagged by each validation rule since startup.
+     *
+     * @return a Mono containing a Map of ValidationRule and their hit counts
+     */
+    public Mono<Map<ValidationRule, Long>> getValidationRuleHits() {
+        return Mono.fromSupplier(validationService::getRuleHits);
+    }
+
+    /**
+     * Fetches the fuel efficiency and speed distribution of a vessel over a range of days.
+     *
+     * @param vesselId the ID of the vessel
+     * @param from     the first day of the range
+     * @param to       the last day of the range
+     * @return a Mono containing the analytics of the vessel
+     */
+    public Mono<VesselAnalytics> getVesselAnalytics(String vesselId, LocalDate from, LocalDate to) {
+        return analyticsService.getVesselAnalytics(vesselId, from, to);
+    }
+
+    /**
+     * Fetches the metrics of several vessels over the same time range, grouped per vessel.
+     *
+     * @param vesselIds the IDs of the vessels
+     * @param from      the start of the time range
+     * @param to        the end of the time range
+     * @return a Flux of VesselMetricsGroup objects
+     */
+    public Flux<VesselMetricsGroup> getGroupedVesselMetrics(List<String> vesselIds, Instant from, Instant to) {
+        return batchQueryService.getGroupedVesselMetrics(vesselIds, from, to);
+    }
+
+    /**
+     * Fetches the metrics of several vessels over the same time range as one stream ordered by timestamp.
+     *
+     * @param vesselIds the IDs of the vessels
+     * @param from      the start of the time range
+     * @param to        the end of the time range
+     * @return a Flux of VesselMetrics objects
+     */
+    public Flux<VesselMetrics> getMergedVesselMetrics(List<String> vesselIds, Instant from, Instant to) {
+        return batchQueryService.getMergedVesselMetrics(vesselIds, from, to);
+    }
+
+    /**
+     * Starts a bulk export of the vessel metrics.
+     *
+     * @param request the format and optional time slice of the export
+     * @return a Mono containing the initial progress of the export
+     */
+    public Mono<ExportProgress> startExport(ExportRequest request) {
+        return blocking(() -> exportService.start(request));
+    }
+
+    /**
+     * Resumes an interrupted bulk export.
+     *
+     * @param exportId the ID of the export
+     * @return a Mono containing the progress of the export
+     */
+    public Mono<ExportProgress> resumeExport(String exportId) {
+        return blocking(() -> exportService.resume(exportId));
+    }
+
+    /**
+     * Fetches the progress of a bulk export.
+     *
+     * @param exportId the ID of the export
+     * @return a Mono containing the progress of the export
+     */
+    public Mono<ExportProgress> getExportProgress(String exportId) {
+        return Mono.fromSupplier(() -> exportService.getProgress(exportId));
+    }
+
+    /**
+     * Starts a job that recomputes the derived metrics and the validity of all stored points.
+     *
+     * @return a Mono containing the new job
+     */
+    public Mono<ReprocessJob> startReprocessing() {
+        return reprocessService.start();
+    }
+
+    /**
+     * Resumes an interrupted reprocessing job.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the job
+     */
+    public Mono<ReprocessJob> resumeReprocessing(UUID jobId) {
+        return reprocessService.resume(jobId);
+    }
+
+    /**
+     * Fetches the progress of a reprocessing job.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono containing the job
+     */
+    public Mono<ReprocessJob> getReprocessingJob(UUID jobId) {
+        return reprocessService.getJob(jobId);
+    }
+
+    /**
+     * Runs blocking work on the bounded virtual threads of the blocking scheduler. When both
+     * its caps are reached the request fails with 503 instead of queueing without limit.
+     */
+    private <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work)
+                .subscribeOn(blockingScheduler)
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many blocking tasks", e));
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException e) {
+            log.warn("Error closing upload: {}", e.getMessage());
+        }
+    }
+}
@@ -1,47 +1,185 @@
 package com.geomark.maritimemetrics.service;
 
+import com.geomark.maritimemetrics.config.ValidationProperties;
 import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ValidationRule;
 import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.util.GeoUtils;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This service is responsible for validating the VesselMetrics data.
- * It checks for missing or invalid values and adds data quality issues to the metrics.
+ * The configured rules are compiled at startup into a single pass evaluator that produces
+ * an issue bitmask (one bit per {@link ValidationRule}) and keeps a hit counter per rule.
  * It can be used to ensure that the data is clean and ready for processing.
  */
 @Service
 public class VesselMetricsValidationService {
 
+    private static final ValidationRule[] RULES = ValidationRule.values();
+
+    private final int enabledMask;
+
+    private final double latitudeMin;
+    private final double latitudeMax;
+    private final double longitudeMin;
+    private final double longitudeMax;
+    private final double speedMin;
+    private final double speedMax;
+    private final double rpmMin;
+    private final double rpmMax;
+    private final double maxImpliedSpeedKmh;
+
+    /**
+     * Issue lists indexed by mask, so that evaluation never allocates a list per point.
+     */
+    private final List<List<DataQualityIssue>> issuesByMask;
+
+    private final LongAdder[] ruleHits;
+
+    public VesselMetricsValidationService(ValidationProperties properties) {
+        int mask = 0;
+        for (ValidationRule rule : properties.getEnabledRules()) {
+            mask |= rule.bit();
+        }
+        this.enabledMask = mask;
+
+        this.latitudeMin = properties.getLatitudeMin();
+        this.latitudeMax = properties.getLatitudeMax();
+        this.longitudeMin = properties.getLongitudeMin();
+        this.longitudeMax = properties.getLongitudeMax();
+        this.speedMin = properties.getSpeedMin();
+        this.speedMax = properties.getSpeedMax();
+        this.rpmMin = properties.getRpmMin();
+        this.rpmMax = properties.getRpmMax();
+        this.maxImpliedSpeedKmh = properties.getMaxImpliedSpeedKmh();
+
+        List<List<DataQualityIssue>> issueLists = new ArrayList<>(1 << RULES.length);
+        for (int m = 0; m < 1 << RULES.length; m++) {
+            Set<DataQualityIssue> issues = EnumSet.noneOf(DataQualityIssue.class);
+            for (ValidationRule rule : RULES) {
+                if ((m & rule.bit()) != 0) {
+                    issues.add(rule.getIssue());
+                }
+            }
+            issueLists.add(List.copyOf(issues));
+        }
+        this.issuesByMask = List.copyOf(issueLists);
+
+        this.ruleHits = new LongAdder[RULES.length];
+        for (int i = 0; i < ruleHits.length; i++) {
+            ruleHits[i] = new LongAdder();
+        }
+    }
+
     /**
-     * Validates the given VesselMetrics object.
-     * Checks for missing or invalid values and adds data quality issues to the metrics.
+     * Validates the given VesselMetrics object without any knowledge of the previous point.
      *
      * @param metric The VesselMetrics object to validate.
+     * @return the issue mask of the metric
+     */
+    public int validateMetrics(VesselMetrics metric) {
+        return validateMetrics(metric, null);
+    }
+
+    /**
+     * Validates the given VesselMetrics object against the previous point of the same vessel.
+     * Sets the validity flag and the data quality issues on the metric.
+     *
+     * @param metric   The VesselMetrics object to validate.
+     * @param previous The previous point of the same vessel, or null if unknown.
+     * @return the issue mask of the metric
      */
-    public void validateMetrics(VesselMetrics metric) {
-        List<DataQualityIssue> issues = new ArrayList<>();
-
-        if (metric.getActualSpeed() == null || metric.getProposedSpeed() == null
-                || metric.getLatitude() == null || metric.getLongitude() == null) {
-            issues.add(DataQualityIssue.MISSING_DATA);
-        } else if (metric.getActualSpeed() < 0) {
-            issues.add(DataQualityIssue.INVALID_DATA);
+    public int validateMetrics(VesselMetrics metric, VesselMetrics previous) {
+        int mask = revalidateMetrics(metric, previous);
+        for (int bits = mask; bits != 0; bits &= bits - 1) {
+            ruleHits[Integer.numberOfTrailingZeros(bits)].increment();
         }
+        return mask;
+    }
+
+    /**
+     * Validates a stored point again, e.g. when reprocessing. Sets the validity flag and the
+     * data quality issues like {@link #validateMetrics(VesselMetrics, VesselMetrics)}, but
+     * does not count rule hits, which only count the ingested points.
+     *
+     * @param metric   The VesselMetrics object to validate.
+     * @param previous The previous point of the same vessel, or null if unknown.
+     * @return the issue mask of the metric
+     */
+    public int revalidateMetrics(VesselMetrics metric, VesselMetrics previous) {
+        int mask = evaluate(metric, previous);
 
-        if (metric.getFuelConsumption() != null && metric.getFuelConsumption() < 0) {
-            issues.add(DataQualityIssue.INVALID_DATA);
+        metric.setIsvalid(mask == 0);
+        metric.setDataQualityIssues(issuesByMask.get(mask));
+        return mask;
+    }
+
+    /**
+     * Returns the number of points each rule has flagged since startup.
+     *
+     * @return a Map of ValidationRule and their hit counts
+     */
+    public Map<ValidationRule, Long> getRuleHits() {
+        Map<ValidationRule, Long> hits = new EnumMap<>(ValidationRule.class);
+        for (ValidationRule rule : RULES) {
+            hits.put(rule, ruleHits[rule.ordinal()].sum());
         }
+        return hits;
+    }
+
+    /**
+     * Evaluates all rules in one pass. Missing values are mapped to NaN, for which every
+     * comparison is false, so the bound checks need no explicit null branches.
+     */
+    private int evaluate(VesselMetrics metric, VesselMetrics previous) {
+        double actualSpeed = valueOf(metric.getActualSpeed());
+        double proposedSpeed = valueOf(metric.getProposedSpeed());
+        double fuel = valueOf(metric.getFuelConsumption());
+        double rpm = valueOf(metric.getEngineRpm());
+        double lat = valueOf(metric.getLatitude());
+        double lon = valueOf(metric.getLongitude());
+
+        boolean missing = actualSpeed != actualSpeed | proposedSpeed != proposedSpeed
+                | lat != lat | lon != lon;
 
-        if (metric.getEngineRpm() != null && metric.getEngineRpm() < 0) {
-            issues.add(DataQualityIssue.INVALID_DATA);
+        int mask = bit(missing, ValidationRule.MISSING_FIELDS)
+                | bit(!missing & actualSpeed < 0, ValidationRule.NEGATIVE_SPEED)
+                | bit(fuel < 0, ValidationRule.NEGATIVE_FUEL)
+                | bit(rpm < 0, ValidationRule.NEGATIVE_RPM)
+                | bit(lat < latitudeMin | lat > latitudeMax, ValidationRule.LATITUDE_BOUNDS)
+                | bit(lon < longitudeMin | lon > longitudeMax, ValidationRule.LONGITUDE_BOUNDS)
+                | bit(actualSpeed < speedMin | actualSpeed > speedMax
+                        | proposedSpeed < speedMin | proposedSpeed > speedMax, ValidationRule.SPEED_ENVELOPE)
+                | bit(rpm < rpmMin | rpm > rpmMax, ValidationRule.RPM_ENVELOPE);
+
+        if (previous != null) {
+            long elapsedMillis = metric.getKey().getTimestamp().toEpochMilli()
+                    - previous.getKey().getTimestamp().toEpochMilli();
+            double prevLat = valueOf(previous.getLatitude());
+            double prevLon = valueOf(previous.getLongitude());
+            double impliedSpeed = GeoUtils.distanceKm(prevLat, prevLon, lat, lon) / (elapsedMillis / 3600000.0);
+
+            mask |= bit(elapsedMillis <= 0, ValidationRule.TIMESTAMP_ORDER)
+                    | bit(elapsedMillis > 0 & impliedSpeed > maxImpliedSpeedKmh, ValidationRule.TELEPORT);
         }
 
-        metric.setIsvalid(issues.isEmpty());
+        return mask & enabledMask;
+    }
+
+    private static int bit(boolean condition, ValidationRule rule) {
+        return (condition ? 1 : 0) << rule.ordinal();
+    }
 
-        // Add other validations
-        metric.setDataQualityIssues(issues);
+    private static double valueOf(Double value) {
+        return value == null ? Double.NaN : value;
     }
 }
@@ -1,14 +1,20 @@
 package com.geomark.maritimemetrics.service;
 
 
+import com.datastax.oss.driver.api.core.cql.BatchType;
 import com.geomark.maritimemetrics.model.VesselMetrics;
-import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import com.geomark.maritimemetrics.util.GeoUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Map;
 
 /**
  * This service is responsible for processing VesselMetrics data.
@@ -16,80 +22,92 @@ import java.util.function.Consumer;
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class VesselProcessorService implements Consumer<List<VesselMetrics>> {
+public class VesselProcessorService {
 
-    private final VesselMetricsReactiveRepository reactiveRepository;
+    private final ReactiveCassandraOperations cassandraOperations;
 
     private final VesselMetricsValidationService validationService;
 
 
 
     /**
-     * Processes the input list of VesselMetrics.
-     * This method is called when the input list is ready for processing.
+     * Opens a sequence for one stream of points, e.g. one ingest. Every point is processed
+     * against the previous point of its vessel in the stream.
      *
-     * @param o the input argument
+     * @return a new sequence
      */
-    @Override
-    public void accept(List<VesselMetrics> o) {
-        List<VesselMetrics> revList = o.reversed();
-        VesselMetrics current = revList.removeFirst();
-
-        calculateDerivedMetrics(current, revList);
-        validationService.validateMetrics(current);
-
-        log.info("Processing Point: {}", current.getKey());
-        reactiveRepository.insert(current)
-                .doOnSuccess(savedMetric -> {
-                    log.info("Saved metric: {}", savedMetric);
-                })
-                .doOnError(e -> {
-                    log.error("Error saving metric: {}", e.getMessage());
-                }).subscribe();
+    public Sequence newSequence() {
+        return new Sequence(false);
+    }
+
+    /**
+     * Opens a sequence for stored points that are processed again, e.g. by a reprocessing
+     * job. The points are validated without counting rule hits.
+     *
+     * @return a new sequence
+     */
+    public Sequence newRevalidationSequence() {
+        return new Sequence(true);
     }
 
 
     /**
-     * Calculates derived metrics for the given VesselMetrics object.
+     * Saves a batch of processed VesselMetrics as a single unlogged batch.
+     * All points must belong to the same vessel, so that the batch stays within one
+     * partition and the coordinator does not fan it out; see {@link #byVessel(List)}.
      *
-     * @param metric  the VesselMetrics object to calculate derived metrics for
-     * @param context the context in which to calculate the derived metrics
+     * @param batch the points of one vessel to save
+     * @return a Mono that completes when the batch has been written
      */
-    private void calculateDerivedMetrics(VesselMetrics metric, List<VesselMetrics> context) {
-        context.stream()
-                .filter(mtr -> mtr.getKey().getVesselId().equals(metric.getKey().getVesselId()))
-                .filter(mtr -> mtr.getLatitude() != null || mtr.getLongitude() != null)
-                .findFirst().ifPresent(mtr -> {
-                    if (metric.getLatitude() != null && metric.getLongitude() != null && mtr.getLatitude() != null && mtr.getLongitude() != null) {
-                        double actualDistance = calculateDistance(metric.getLatitude(), metric.getLongitude(), mtr.getLatitude(), mtr.getLongitude());
-                        double timeDifference = (metric.getKey().getTimestamp().toEpochMilli() - mtr.getKey().getTimestamp().toEpochMilli()) / 3600000.0;
-                        // in hours
-                        double actualSpeed = calculateSpeed(actualDistance, timeDifference);
-                        metric.setActualSpeed(actualSpeed);
-                    }
-                });
+    public Mono<Void> save(List<VesselMetrics> batch) {
+        return cassandraOperations.batchOps(BatchType.UNLOGGED)
+                .insert(batch)
+                .execute()
+                .doOnSuccess(result -> {
+                    log.debug("Saved {} metrics", batch.size());
+                })
+                .doOnError(e -> {
+                    log.error("Error saving metrics: {}", e.getMessage());
+                })
+                .then();
     }
 
 
     /**
-     * Calculates the distance between two geographical points using the Haversine formula.
+     * Splits a batch of points into single partition batches, one per vessel, keeping the
+     * order of the vessels and of the points of each vessel.
      *
-     * @param lat1
-     * @param lon1
-     * @param lat2
-     * @param lon2
-     * @return
+     * @param batch the points to split
+     * @return the points grouped per vessel
      */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        double lat1Rad = Math.toRadians(lat1);
-        double lat2Rad = Math.toRadians(lat2);
-        double lon1Rad = Math.toRadians(lon1);
-        double lon2Rad = Math.toRadians(lon2);
+    public static List<List<VesselMetrics>> byVessel(List<VesselMetrics> batch) {
+        Map<String, List<VesselMetrics>> partitions = new LinkedHashMap<>();
+        for (VesselMetrics metric : batch) {
+            partitions.computeIfAbsent(metric.getKey().getVesselId(), vesselId -> new ArrayList<>()).add(metric);
+        }
+        return List.copyOf(partitions.values());
+    }
 
-        double x = (lon2Rad - lon1Rad) * Math.cos((lat1Rad + lat2Rad) / 2);
-        double y = (lat2Rad - lat1Rad);
 
-        return Math.sqrt(x * x + y * y) * 6371;
+    /**
+     * Calculates derived metrics for the given VesselMetrics object.
+     * The speed is only derived from a previous point with an earlier timestamp.
+     *
+     * @param metric   the VesselMetrics object to calculate derived metrics for
+     * @param previous the previous point of the same vessel, or null if unknown
+     */
+    private void calculateDerivedMetrics(VesselMetrics metric, VesselMetrics previous) {
+        if (previous == null) {
+            return;
+        }
+        if (metric.getLatitude() != null && metric.getLongitude() != null && previous.getLatitude() != null && previous.getLongitude() != null) {
+            double actualDistance = GeoUtils.distanceKm(metric.getLatitude(), metric.getLongitude(), previous.getLatitude(), previous.getLongitude());
+            double timeDifference = (metric.getKey().getTimestamp().toEpochMilli() - previous.getKey().getTimestamp().toEpochMilli()) / 3600000.0;
+            // in hours
+            if (timeDifference > 0) {
+                metric.setActualSpeed(calculateSpeed(actualDistance, timeDifference));
+            }
+        }
     }
 
 
@@ -105,4 +123,60 @@ public class VesselProcessorService implements Consumer<List<VesselMetrics>> {
     }
 
 
+    /**
+     * The previous point of every vessel of one stream of points. Not thread safe, the points
+     * of a stream are processed one at a time.
+     */
+    public class Sequence {
+
+        private final Map<String, VesselMetrics> previousByVessel = new HashMap<>();
+
+        private final boolean revalidation;
+
+        private Sequence(boolean revalidation) {
+            this.revalidation = revalidation;
+        }
+
+        /**
+         * Continues the sequence after a point processed earlier, e.g. the last point before
+         * a checkpoint.
+         *
+         * @param previous the previous point of its vessel
+         * @return this sequence
+         */
+        public Sequence after(VesselMetrics previous) {
+            previousByVessel.put(previous.getKey().getVesselId(), previous);
+            return this;
+        }
+
+        /**
+         * Derives and validates the next point of the stream against the previous point of
+         * its vessel. A point repeating the timestamp of that previous point is skipped, it
+         * would derive no speed and overwrite the row of the previous point.
+         *
+         * @param current the next point
+         * @return the processed point, or null if it was skipped
+         */
+        public VesselMetrics process(VesselMetrics current) {
+            String vesselId = current.getKey().getVesselId();
+            VesselMetrics previous = previousByVessel.get(vesselId);
+            if (previous != null && previous.getKey().getTimestamp().equals(current.getKey().getTimestamp())) {
+                log.debug("Skipping repeated point: {}", current.getKey());
+                return null;
+            }
+
+            calculateDerivedMetrics(current, previous);
+            if (revalidation) {
+                validationService.revalidateMetrics(current, previous);
+            } else {
+                validationService.validateMetrics(current, previous);
+            }
+            previousByVessel.put(vesselId, current);
+
+            log.debug("Processing Point: {}", current.getKey());
+            return current;
+        }
+    }
+
+
 }
@@ -0,0 +1,99 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import com.geomark.maritimemetrics.model.WorkUnitStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Coordination store of distributed ingests. Work units are claimed through leases; a lease
+ * that is not renewed expires and the unit can be claimed by any other instance.
+ */
+public interface WorkCoordinator {
+
+    /**
+     * Publishes the work units of a new job. The payloads are consumed one at a time, so
+     * only one unit has to be held in memory.
+     *
+     * @param jobId    the ID of the job
+     * @param payloads the payload of every unit
+     * @return a Mono that completes when the job is visible to all instances
+     */
+    Mono<Void> publish(UUID jobId, Flux<byte[]> payloads);
+
+    /**
+     * Lists the jobs that still have unfinished units.
+     */
+    Flux<UUID> openJobs();
+
+    /**
+     * Claims a pending unit of the job, or a unit whose lease has expired. An expired lease
+     * counts as a failed attempt; a unit that reached the maximum number of attempts this
+     * way is marked failed instead of being claimed, so a unit that kills its instances is
+     * not retried forever.
+     *
+     * @param jobId       the ID of the job
+     * @param owner       the ID of the claiming instance
+     * @param lease       the lease duration
+     * @param maxAttempts the maximum number of attempts of a unit
+     * @return a Mono emitting the claimed unit, or empty if no unit can be claimed
+     */
+    Mono<WorkUnit> claim(UUID jobId, String owner, Duration lease, int maxAttempts);
+
+    /**
+     * Extends the lease of a claimed unit.
+     *
+     * @return a Mono emitting false if the unit is no longer owned by the instance
+     */
+    Mono<Boolean> renew(WorkUnit unit, String owner, Duration lease);
+
+    /**
+     * Marks a claimed unit as done and stores its result.
+     *
+     * @return a Mono emitting false if the unit is no longer owned by the instance
+     */
+    Mono<Boolean> complete(WorkUnit unit, String owner, ImportResult result);
+
+    /**
+     * Gives a claimed unit back after a failure. The unit becomes pending again, or failed
+     * once it reached the maximum number of attempts.
+     */
+    Mono<Boolean> release(WorkUnit unit, String owner, int maxAttempts);
+
+    /**
+     * Returns the current status of a unit.
+     *
+     * @return a Mono emitting the status, or empty if the unit is unknown
+     */
+    Mono<WorkUnitStatus> status(WorkUnit unit);
+
+    /**
+     * Cancels every unit of the job that is not done or failed yet. Cancelled units are never
+     * claimed again, and the leases of claimed units can no longer be renewed.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono emitting false if the job is not open
+     */
+    Mono<Boolean> cancel(UUID jobId);
+
+    /**
+     * Closes the job if all of its units are done, failed or cancelled.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono emitting the combined result of the job if this call closed it, or empty
+     */
+    Mono<ImportResult> closeIfFinished(UUID jobId);
+
+    /**
+     * Returns the progress of a job over all of its units, also after the job was closed.
+     *
+     * @param jobId the ID of the job
+     * @return a Mono emitting the progress, or empty if the job is unknown
+     */
+    Mono<DistributedJobProgress> progress(UUID jobId);
+}
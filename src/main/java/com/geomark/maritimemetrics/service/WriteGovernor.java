@@ -0,0 +1,296 @@
+package com.geomark.maritimemetrics.service;
+
+import com.codahale.metrics.Gauge;
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.datastax.oss.driver.api.core.connection.BusyConnectionException;
+import com.datastax.oss.driver.api.core.metadata.Node;
+import com.datastax.oss.driver.api.core.metrics.DefaultNodeMetric;
+import com.datastax.oss.driver.api.core.servererrors.OverloadedException;
+import com.datastax.oss.driver.api.core.servererrors.WriteTimeoutException;
+import com.geomark.maritimemetrics.config.WriteGovernorProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * This service controls how many Cassandra writes the ingest path keeps in flight.
+ * It follows an additive increase / multiplicative decrease (AIMD) policy: while writes are
+ * fast and the whole budget is in use the limit grows slowly, and as soon as latency exceeds
+ * the target, writes time out or the driver pools fill up, the limit and the batch size are cut.
+ */
+@Service
+@Slf4j
+public class WriteGovernor implements MeterBinder {
+
+    private final WriteGovernorProperties properties;
+
+    private final CqlSession session;
+
+    private final long targetLatencyNanos;
+
+    private volatile int limit;
+
+    private volatile int batchSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    // Statistics of the current adjustment window
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public WriteGovernor(WriteGovernorProperties properties, CqlSession session) {
+        this.properties = properties;
+        this.session = session;
+        this.targetLatencyNanos = properties.getTargetLatency().toNanos();
+        this.limit = clamp(properties.getInitialConcurrency(), properties.getMinConcurrency(), properties.getMaxConcurrency());
+        this.batchSize = clamp(properties.getInitialBatchSize(), properties.getMinBatchSize(), properties.getMaxBatchSize());
+    }
+
+    /**
+     * Registers the limit, batch size and in-flight gauges.
+     */
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        meterRegistry.gauge("maritime.ingest.write.concurrency.limit", this, WriteGovernor::getLimit);
+        meterRegistry.gauge("maritime.ingest.write.batch.size", this, WriteGovernor::getBatchSize);
+        meterRegistry.gauge("maritime.ingest.write.in.flight", inFlight);
+    }
+
+    /**
+     * Runs the given write once a permit is available and records its latency and outcome.
+     *
+     * @param write the supplier of the write to execute
+     * @return a Mono emitting the result of the write
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> write) {
+        return acquire().flatMap(permit -> {
+            long start = System.nanoTime();
+            return Mono.defer(write)
+                    .doOnSuccess(result -> record(start, null))
+                    .doOnError(e -> record(start, e))
+                    .doFinally(signal -> permit.release());
+        });
+    }
+
+    /**
+     * Returns a predicate for {@code Flux.bufferUntil} that closes a batch whenever it reaches
+     * the current batch size. Every call returns a new predicate with its own counter.
+     *
+     * @return the batch boundary predicate
+     */
+    public <T> Predicate<T> batchBoundary() {
+        AtomicInteger count = new AtomicInteger();
+        return element -> {
+            if (count.incrementAndGet() >= batchSize) {
+                count.set(0);
+                return true;
+            }
+            return false;
+        };
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * The upper bound of concurrent writes, to be used as the concurrency of the flatMap
+     * feeding {@link #execute(Supplier)}.
+     */
+    public int getMaxConcurrency() {
+        return properties.getMaxConcurrency();
+    }
+
+    /**
+     * Adjusts the concurrency limit and the batch size based on the statistics collected
+     * since the previous adjustment.
+     */
+    @Scheduled(fixedDelayString = "${maritime.ingest.write-governor.adjust-interval:1s}")
+    public void adjust() {
+        long count = completed.sumThenReset();
+        long latency = latencyNanos.sumThenReset();
+        long timedOut = timeouts.sumThenReset();
+        int peak = peakInFlight.getAndSet(inFlight.get());
+        if (count == 0 && timedOut == 0) {
+            return;
+        }
+
+        long averageLatency = count == 0 ? 0 : latency / count;
+        long driverInFlight = driverInFlight();
+        int current = limit;
+
+        if (timedOut > 0 || averageLatency > targetLatencyNanos || driverInFlight > properties.getMaxDriverInFlight()) {
+            limit = clamp((int) (current * properties.getMultiplicativeDecrease()),
+                    properties.getMinConcurrency(), properties.getMaxConcurrency());
+            if (timedOut > 0) {
+                batchSize = clamp(batchSize / 2, properties.getMinBatchSize(), properties.getMaxBatchSize());
+            }
+            log.info("Write governor decreased limit {} -> {} (avg latency {} us, timeouts {}, driver in-flight {})",
+                    current, limit, averageLatency / 1000, timedOut, driverInFlight);
+        } else if (peak >= current) {
+            limit = clamp(current + properties.getAdditiveIncrease(),
+                    properties.getMinConcurrency(), properties.getMaxConcurrency());
+            batchSize = clamp(batchSize + 1, properties.getMinBatchSize(), properties.getMaxBatchSize());
+            log.debug("Write governor increased limit {} -> {} (avg latency {} us)", current, limit, averageLatency / 1000);
+        }
+        drain();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.defer(() -> {
+            if (tryAcquire()) {
+                return Mono.just(new Permit());
+            }
+            return Mono.create(sink -> {
+                Waiter waiter = new Waiter(sink);
+                sink.onCancel(waiter::cancel);
+                waiters.offer(waiter);
+                drain();
+            });
+        });
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                peakInFlight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Hands out free permits to queued waiters.
+     */
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null || !waiter.grant()) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private void record(long start, Throwable error) {
+        completed.increment();
+        latencyNanos.add(System.nanoTime() - start);
+        if (error != null && isOverload(error)) {
+            timeouts.increment();
+        }
+    }
+
+    private static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof DriverTimeoutException || t instanceof WriteTimeoutException
+                    || t instanceof OverloadedException || t instanceof BusyConnectionException
+                    || t instanceof QueryTimeoutException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sums the in-flight requests of all nodes as reported by the driver metrics.
+     */
+    @SuppressWarnings("unchecked")
+    private long driverInFlight() {
+        return session.getMetrics().map(metrics -> {
+            long total = 0;
+            for (Node node : session.getMetadata().getNodes().values()) {
+                Optional<Gauge<Integer>> gauge = metrics.getNodeMetric(node, DefaultNodeMetric.IN_FLIGHT);
+                if (gauge.isPresent()) {
+                    total += gauge.get().getValue();
+                }
+            }
+            return total;
+        }).orElse(0L);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * A granted write slot. Releasing it more than once has no effect.
+     */
+    private final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+    }
+
+    /**
+     * A write waiting for a permit.
+     */
+    private final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private final Permit permit = new Permit();
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        boolean grant() {
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                return false;
+            }
+            sink.success(permit);
+            return true;
+        }
+
+        void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                waiters.remove(this);
+            } else {
+                permit.release();
+            }
+        }
+    }
+}
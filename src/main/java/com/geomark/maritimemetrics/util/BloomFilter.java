@@ -0,0 +1,86 @@
+package com.geomark.maritimemetrics.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread safe bloom filter over long keys.
+ * It never reports false negatives; the false positive rate stays close to the configured
+ * one as long as the number of added keys does not exceed the expected insertions.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    /**
+     * Creates a bloom filter sized for the given number of keys and false positive rate.
+     *
+     * @param expectedInsertions the number of keys the filter is sized for
+     * @param falsePositiveRate  the accepted false positive rate, between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) >>> 6);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Adds a key to the filter.
+     *
+     * @param key the key to add
+     * @return true if the key was possibly already contained
+     */
+    public boolean add(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        boolean contained = true;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long previous = bits.getAndUpdate(word, w -> w | mask);
+            contained &= (previous & mask) != 0;
+        }
+        return contained;
+    }
+
+    /**
+     * Checks whether a key might have been added to the filter.
+     *
+     * @param key the key to check
+     * @return false if the key was definitely never added
+     */
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the memory used by the bit array, in bytes.
+     */
+    public long sizeInBytes() {
+        return bitCount >>> 3;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads the bits of sequential timestamps over the whole word.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -38,9 +38,21 @@ public class CSVReaderProvider {
      * @throws IOException
      */
     public static Flux<CsvRecord> ofReader(MultipartFile file) throws IOException {
+        return ofStream(file.getInputStream());
+    }
+
+
+    /**
+     * Factory method that reads CSV content from a stream and converts it to a stream of CsvRecord objects.
+     * The reader, and with it the stream, is closed when the Flux terminates or is cancelled.
+     *
+     * @param csv the CSV content to read
+     * @return a Flux of CsvRecord objects
+     */
+    public static Flux<CsvRecord> ofStream(InputStream csv) {
         CSVReaderProvider parser = new CSVReaderProvider();
 
-        return Flux.fromIterable(parser.reader(file.getInputStream()));
+        return Flux.using(() -> parser.reader(csv), Flux::fromIterable, CSVReaderProvider::close);
     }
 
 
@@ -60,6 +72,14 @@ public class CSVReaderProvider {
                 .ofCsvRecord(csvFile);
     }
 
+    private static void close(CsvReader<CsvRecord> reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Error closing CSV reader: {}", e.getMessage());
+        }
+    }
+
     /**
      * Parses a CSV record into a VesselMetrics object.
      *
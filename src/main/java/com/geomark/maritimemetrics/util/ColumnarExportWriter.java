@@ -0,0 +1,133 @@
+package com.geomark.maritimemetrics.util;
+
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes exported vessel metrics in a simple columnar block format. Rows are collected into
+ * blocks and every block stores each column contiguously, which compresses well and lets
+ * readers load single columns without parsing text. All values are big-endian.
+ * <pre>
+ * block:
+ *   int     magic 'MMC1'
+ *   int     rowCount
+ *   int     dictionarySize, then dictionarySize modified UTF-8 vessel IDs
+ *   int[]   vessel ID dictionary index per row
+ *   long[]  timestamp in epoch milliseconds per row
+ *   double[] latitude, longitude, actualSpeed, proposedSpeed, fuelConsumption, engineRpm
+ *           (one array per column, NaN for missing values)
+ *   byte[]  isvalid per row: 0 false, 1 true, 2 missing
+ *   int[]   data quality issues per row, bit n set for DataQualityIssue ordinal n
+ * </pre>
+ * Blocks are self-contained, so exports of several token ranges can be concatenated.
+ */
+public class ColumnarExportWriter implements ExportWriter {
+
+    public static final int MAGIC = 0x4D4D4331;
+
+    private final DataOutputStream output;
+
+    private final int blockRows;
+
+    private final String[] vesselIds;
+
+    private final long[] timestamps;
+
+    private final double[][] values;
+
+    private final byte[] valid;
+
+    private final int[] issues;
+
+    private int rows;
+
+    public ColumnarExportWriter(OutputStream output, int blockRows) {
+        this.output = new DataOutputStream(new BufferedOutputStream(output, ExportWriter.GZIP_BUFFER_SIZE));
+        this.blockRows = blockRows;
+        this.vesselIds = new String[blockRows];
+        this.timestamps = new long[blockRows];
+        this.values = new double[6][blockRows];
+        this.valid = new byte[blockRows];
+        this.issues = new int[blockRows];
+    }
+
+    @Override
+    public void write(VesselMetrics metric) throws IOException {
+        vesselIds[rows] = metric.getKey().getVesselId();
+        timestamps[rows] = metric.getKey().getTimestamp().toEpochMilli();
+        values[0][rows] = value(metric.getLatitude());
+        values[1][rows] = value(metric.getLongitude());
+        values[2][rows] = value(metric.getActualSpeed());
+        values[3][rows] = value(metric.getProposedSpeed());
+        values[4][rows] = value(metric.getFuelConsumption());
+        values[5][rows] = value(metric.getEngineRpm());
+        valid[rows] = metric.getIsvalid() == null ? 2 : (byte) (metric.getIsvalid() ? 1 : 0);
+        issues[rows] = mask(metric.getDataQualityIssues());
+        if (++rows == blockRows) {
+            flushBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (rows > 0) {
+            flushBlock();
+        }
+        output.close();
+    }
+
+    private void flushBlock() throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        int[] indexes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            indexes[i] = dictionary.computeIfAbsent(vesselIds[i], id -> dictionary.size());
+        }
+        String[] entries = new String[dictionary.size()];
+        dictionary.forEach((id, index) -> entries[index] = id);
+
+        output.writeInt(MAGIC);
+        output.writeInt(rows);
+        output.writeInt(entries.length);
+        for (String entry : entries) {
+            output.writeUTF(entry);
+        }
+        for (int i = 0; i < rows; i++) {
+            output.writeInt(indexes[i]);
+        }
+        for (int i = 0; i < rows; i++) {
+            output.writeLong(timestamps[i]);
+        }
+        for (double[] column : values) {
+            for (int i = 0; i < rows; i++) {
+                output.writeDouble(column[i]);
+            }
+        }
+        output.write(valid, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            output.writeInt(issues[i]);
+        }
+        rows = 0;
+    }
+
+    private static double value(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static int mask(List<DataQualityIssue> dataQualityIssues) {
+        int mask = 0;
+        if (dataQualityIssues != null) {
+            for (DataQualityIssue issue : dataQualityIssues) {
+                mask |= 1 << issue.ordinal();
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,65 @@
+package com.geomark.maritimemetrics.util;
+
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import de.siegmar.fastcsv.writer.CsvWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Writes exported vessel metrics as CSV. Timestamps are ISO-8601 instants, missing values are
+ * empty fields and the data quality issues are joined with '|'.
+ */
+public class CsvExportWriter implements ExportWriter {
+
+    public static final String[] HEADER = {
+            "vessel_id", "timestamp", "latitude", "longitude", "actual_speed", "proposed_speed",
+            "fuel_consumption", "engine_rpm", "is_valid", "data_quality_issues"};
+
+    private final CsvWriter writer;
+
+    public CsvExportWriter(OutputStream output, boolean withHeader) {
+        this.writer = CsvWriter.builder()
+                .build(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+        if (withHeader) {
+            writer.writeRecord(HEADER);
+        }
+    }
+
+    @Override
+    public void write(VesselMetrics metric) {
+        writer.writeRecord(
+                metric.getKey().getVesselId(),
+                metric.getKey().getTimestamp().toString(),
+                text(metric.getLatitude()),
+                text(metric.getLongitude()),
+                text(metric.getActualSpeed()),
+                text(metric.getProposedSpeed()),
+                text(metric.getFuelConsumption()),
+                text(metric.getEngineRpm()),
+                metric.getIsvalid() == null ? "" : metric.getIsvalid().toString(),
+                issues(metric.getDataQualityIssues()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private static String text(Double value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String issues(List<DataQualityIssue> issues) {
+        if (issues == null || issues.isEmpty()) {
+            return "";
+        }
+        return issues.stream().map(Enum::name).collect(Collectors.joining("|"));
+    }
+}
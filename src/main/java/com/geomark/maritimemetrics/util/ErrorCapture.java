@@ -0,0 +1,111 @@
+package com.geomark.maritimemetrics.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe capture of the errors of an ingest. Errors are counted per error class
+ * and only the first messages are kept as a sample, so a bad file cannot fill the heap with
+ * error strings. Recording never blocks: counters are LongAdders and sample slots are claimed
+ * with an atomic increment.
+ */
+public class ErrorCapture {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 20;
+
+    /**
+     * Maximum number of distinct error classes; further classes are counted as {@link #OTHER}.
+     */
+    static final int MAX_ERROR_CLASSES = 64;
+
+    static final String OTHER = "Other";
+
+    private static final int MAX_MESSAGE_LENGTH = 300;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<String> samples;
+
+    private final AtomicInteger sampled = new AtomicInteger();
+
+    private final int maxErrorClasses;
+
+    public ErrorCapture() {
+        this(DEFAULT_SAMPLE_SIZE);
+    }
+
+    public ErrorCapture(int sampleSize) {
+        this(sampleSize, MAX_ERROR_CLASSES);
+    }
+
+    ErrorCapture(int sampleSize, int maxErrorClasses) {
+        this.samples = new AtomicReferenceArray<>(sampleSize);
+        this.maxErrorClasses = maxErrorClasses;
+    }
+
+    /**
+     * Records one error.
+     *
+     * @param error the error
+     */
+    public void record(Throwable error) {
+        record(error, 1);
+    }
+
+    /**
+     * Records an error that affected several rows, e.g. a failed write batch.
+     *
+     * @param error the error
+     * @param rows  the number of rows affected
+     */
+    public void record(Throwable error, long rows) {
+        String errorClass = error.getClass().getSimpleName();
+        LongAdder counter = counts.get(errorClass);
+        if (counter == null) {
+            counter = counts.size() < maxErrorClasses
+                    ? counts.computeIfAbsent(errorClass, key -> new LongAdder())
+                    : counts.computeIfAbsent(OTHER, key -> new LongAdder());
+        }
+        counter.add(rows);
+
+        if (sampled.get() < samples.length()) {
+            int slot = sampled.getAndIncrement();
+            if (slot < samples.length()) {
+                samples.set(slot, errorClass + ": " + abbreviate(String.valueOf(error.getMessage())));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows affected per error class.
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        counts.forEach((errorClass, counter) -> snapshot.put(errorClass, counter.sum()));
+        return snapshot;
+    }
+
+    /**
+     * Returns the sample of error messages, in the order they were recorded.
+     */
+    public List<String> getSamples() {
+        List<String> snapshot = new ArrayList<>();
+        for (int i = 0; i < samples.length(); i++) {
+            String sample = samples.get(i);
+            if (sample != null) {
+                snapshot.add(sample);
+            }
+        }
+        return snapshot;
+    }
+
+    private static String abbreviate(String message) {
+        return message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,44 @@
+package com.geomark.maritimemetrics.util;
+
+import com.geomark.maritimemetrics.model.ExportFormat;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes exported vessel metrics to a gzip compressed stream. Every writer produces one
+ * complete gzip member, so the files of several writers can simply be concatenated.
+ */
+public interface ExportWriter extends Closeable {
+
+    int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes one row.
+     *
+     * @param metric the row to write
+     * @throws IOException if the row cannot be written
+     */
+    void write(VesselMetrics metric) throws IOException;
+
+    /**
+     * Opens a writer for the given format.
+     *
+     * @param format       the file format
+     * @param output       the stream to write to; it is closed with the writer
+     * @param withHeader   whether a CSV header line is written
+     * @param blockRows    the number of rows per block of the columnar format
+     * @return the writer
+     * @throws IOException if the stream cannot be opened
+     */
+    static ExportWriter open(ExportFormat format, OutputStream output, boolean withHeader, int blockRows) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+        return switch (format) {
+            case CSV_GZIP -> new CsvExportWriter(gzip, withHeader);
+            case COLUMNAR -> new ColumnarExportWriter(gzip, blockRows);
+        };
+    }
+}
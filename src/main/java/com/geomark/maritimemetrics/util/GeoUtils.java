@@ -0,0 +1,40 @@
+package com.geomark.maritimemetrics.util;
+
+/**
+ * Geographical helper functions shared by the ingest, validation and analytics code.
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    public static final double KM_PER_NAUTICAL_MILE = 1.852;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private GeoUtils() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Calculates the distance in kilometers between two geographical points using
+     * the equirectangular approximation, which is accurate enough for consecutive AIS points.
+     *
+     * @param lat1 latitude of the first point
+     * @param lon1 longitude of the first point
+     * @param lat2 latitude of the second point
+     * @param lon2 longitude of the second point
+     * @return the distance in kilometers
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double lon1Rad = Math.toRadians(lon1);
+        double lon2Rad = Math.toRadians(lon2);
+
+        double x = (lon2Rad - lon1Rad) * Math.cos((lat1Rad + lat2Rad) / 2);
+        double y = (lat2Rad - lat1Rad);
+
+        return Math.sqrt(x * x + y * y) * EARTH_RADIUS_KM;
+    }
+}
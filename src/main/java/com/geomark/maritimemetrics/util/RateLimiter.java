@@ -0,0 +1,48 @@
+package com.geomark.maritimemetrics.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter that spaces permits evenly. A caller reserves permits and is told how
+ * long to wait before using them, so reactive pipelines can delay instead of blocking.
+ */
+public class RateLimiter {
+
+    private final double nanosPerPermit;
+
+    private final AtomicLong nextFreeNanos;
+
+    /**
+     * @param permitsPerSecond the sustained rate, 0 or less for no limit
+     */
+    public RateLimiter(int permitsPerSecond) {
+        this.nanosPerPermit = permitsPerSecond <= 0 ? 0 : 1_000_000_000.0 / permitsPerSecond;
+        this.nextFreeNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserves the given number of permits.
+     *
+     * @param permits the number of permits
+     * @return the time to wait before the permits may be used
+     */
+    public Duration reserve(int permits) {
+        return Duration.ofNanos(reserve(permits, System.nanoTime()));
+    }
+
+    long reserve(int permits, long now) {
+        if (nanosPerPermit == 0) {
+            return 0;
+        }
+        long cost = (long) (permits * nanosPerPermit);
+        while (true) {
+            long next = nextFreeNanos.get();
+            // An idle limiter does not accumulate credit beyond the current instant
+            long start = next - now < 0 ? now : next;
+            if (nextFreeNanos.compareAndSet(next, start + cost)) {
+                return start - now;
+            }
+        }
+    }
+}
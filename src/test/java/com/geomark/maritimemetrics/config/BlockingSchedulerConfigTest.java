@@ -0,0 +1,70 @@
+package com.geomark.maritimemetrics.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlockingSchedulerConfigTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private Scheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.dispose();
+    }
+
+    @Test
+    void blockingWorkRunsOnVirtualThreads() {
+        scheduler = schedulerWithCaps(2, 10);
+
+        Boolean virtual = Mono.fromCallable(() -> Thread.currentThread().isVirtual())
+                .subscribeOn(scheduler)
+                .block(Duration.ofSeconds(5));
+
+        assertThat(virtual).isTrue();
+    }
+
+    @Test
+    void tasksBeyondBothCapsAreRejected() throws InterruptedException {
+        scheduler = schedulerWithCaps(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        // One task runs, one waits, the third exceeds both caps
+        scheduler.schedule(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        scheduler.schedule(this::awaitRelease);
+
+        assertThatThrownBy(() -> scheduler.schedule(this::awaitRelease))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    private Scheduler schedulerWithCaps(int threadCap, int queuedTaskCap) {
+        BlockingTaskProperties properties = new BlockingTaskProperties();
+        properties.setThreadCap(threadCap);
+        properties.setQueuedTaskCap(queuedTaskCap);
+        return new BlockingSchedulerConfig().blockingScheduler(properties);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.geomark.maritimemetrics.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mixed read and ingest load against a running instance, run with {@code ./gradlew loadTest -Dload.baseUrl=...}.
+ * <p>
+ * The concurrency is raised level by level; the capacity is the highest level whose p99
+ * latency stays within the budget without errors. Running it against two builds with the same
+ * data and budget compares their concurrent-request capacity at equal p99 latency.
+ * <p>
+ * Properties: {@code load.baseUrl}, {@code load.vesselId}, {@code load.ingestVesselId} (default
+ * load-test, the vessel of the small uploads; its points are skipped as duplicates after the
+ * first upload), {@code load.levels} (default
+ * 50,100,200,400,800), {@code load.requestsPerLevel} (default 2000), {@code load.p99BudgetMillis}
+ * (default 500) and optionally {@code load.minCapacity}, the capacity the instance must reach.
+ */
+@Tag("load")
+@EnabledIfSystemProperty(named = "load.baseUrl", matches = ".+")
+class VesselMetricsLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VesselMetricsLoadTest.class);
+
+    private static final int REQUEST_TYPES = 5;
+
+    private final String vesselId = System.getProperty("load.vesselId", "3001");
+
+    private final List<Integer> levels = Arrays.stream(System.getProperty("load.levels", "50,100,200,400,800").split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .toList();
+
+    private final byte[] upload = upload(System.getProperty("load.ingestVesselId", "load-test"));
+
+    private final int requestsPerLevel = Integer.getInteger("load.requestsPerLevel", 2000);
+
+    private final Duration p99Budget = Duration.ofMillis(Long.getLong("load.p99BudgetMillis", 500));
+
+    private ConnectionProvider connections;
+
+    private WebClient client;
+
+    @BeforeEach
+    void setUp() {
+        int maxLevel = levels.stream().mapToInt(Integer::intValue).max().orElse(1);
+        connections = ConnectionProvider.builder("load")
+                .maxConnections(maxLevel)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        client = WebClient.builder()
+                .baseUrl(System.getProperty("load.baseUrl") + "/api/vessels")
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        connections.dispose();
+    }
+
+    @Test
+    void concurrentRequestCapacityAtP99Budget() {
+        // Warms up connections, JIT and the driver before measuring
+        run(levels.get(0), requestsPerLevel / 4);
+
+        int capacity = 0;
+        log.info(String.format("%8s %10s %10s %10s %8s", "level", "req/s", "p50 ms", "p99 ms", "errors"));
+        for (int level : levels) {
+            LevelResult result = run(level, requestsPerLevel);
+            log.info(String.format("%8d %10.0f %10.1f %10.1f %8d", level, result.requestsPerSecond(),
+                    result.p50Nanos() / 1e6, result.p99Nanos() / 1e6, result.errors()));
+            if (result.errors() > 0 || result.p99Nanos() > p99Budget.toNanos()) {
+                break;
+            }
+            capacity = level;
+        }
+        log.info("Capacity at p99 <= {} ms: {} concurrent requests", p99Budget.toMillis(), capacity);
+
+        assertThat(capacity).isGreaterThanOrEqualTo(Integer.getInteger("load.minCapacity", levels.get(0)));
+    }
+
+    private LevelResult run(int concurrency, int requests) {
+        LongAdder errors = new LongAdder();
+        long start = System.nanoTime();
+        long[] latencies = Flux.range(0, requests)
+                .flatMap(i -> timed(i).onErrorResume(e -> {
+                    errors.increment();
+                    return Mono.empty();
+                }), concurrency)
+                .collectList()
+                .map(list -> list.stream().mapToLong(Long::longValue).sorted().toArray())
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        return new LevelResult(requests / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99), errors.sum());
+    }
+
+    /**
+     * The mixed load: paged speed differences, the data quality issues, the ingest jobs and
+     * small uploads.
+     */
+    private Mono<ResponseEntity<Void>> request(int request) {
+        return switch (request % REQUEST_TYPES) {
+            case 0, 1 -> get("/" + vesselId + "/speed-differences?pageNo=0&pageSize=50&sortBy=DESC");
+            case 2 -> get("/" + vesselId + "/data-issues");
+            case 3 -> get("/ingest/jobs");
+            default -> ingest();
+        };
+    }
+
+    private Mono<ResponseEntity<Void>> get(String uri) {
+        return client.get().uri(uri).retrieve().toBodilessEntity();
+    }
+
+    private Mono<ResponseEntity<Void>> ingest() {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("file", new ByteArrayResource(upload) {
+            @Override
+            public String getFilename() {
+                return "load-test.csv";
+            }
+        }).contentType(MediaType.parseMediaType("text/csv"));
+        return client.post().uri("/ingest")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private Mono<Long> timed(int request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request(request).map(response -> System.nanoTime() - start);
+        });
+    }
+
+    private static byte[] upload(String vesselId) {
+        StringBuilder csv = new StringBuilder("vessel_code,datetime,latitude,longitude,power,fuel_consumption,"
+                + "actual_speed_overground,proposed_speed_overground,predicted_fuel_consumption\n");
+        for (int minute = 0; minute < 10; minute++) {
+            csv.append(String.format("%s,2024-01-01 00:%02d:00,51.9,4.1,5000,1.2,12.5,12.0,1.1\n", vesselId, minute));
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Long.MAX_VALUE;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private record LevelResult(double requestsPerSecond, long p50Nanos, long p99Nanos, long errors) {
+    }
+}
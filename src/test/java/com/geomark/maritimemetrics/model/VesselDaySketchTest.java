@@ -0,0 +1,44 @@
+package com.geomark.maritimemetrics.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VesselDaySketchTest {
+
+    @Test
+    void mergedSketchesMatchASingleSketchOfAllPoints() {
+        VesselDaySketch all = new VesselDaySketch();
+        VesselDaySketch dayOne = new VesselDaySketch();
+        VesselDaySketch dayTwo = new VesselDaySketch();
+        for (int i = 0; i < 1000; i++) {
+            double deviation = (i % 100) / 10.0 - 5;
+            all.recordPoint(deviation, 1.5);
+            (i < 500 ? dayOne : dayTwo).recordPoint(deviation, 1.5);
+        }
+        all.recordLeg(18.52, 3600, 10);
+        dayTwo.recordLeg(18.52, 3600, 10);
+
+        VesselDaySketch merged = new VesselDaySketch().merge(dayOne).merge(dayTwo);
+
+        assertThat(merged.getPoints()).isEqualTo(1000);
+        assertThat(merged.getFuel()).isEqualTo(all.getFuel());
+        assertThat(merged.getDistanceNm()).isCloseTo(10, within(0.001));
+        assertThat(merged.getSpeedBandSeconds()).isEqualTo(all.getSpeedBandSeconds());
+        assertThat(merged.speedDeviationQuantile(0.5)).isEqualTo(all.speedDeviationQuantile(0.5));
+    }
+
+    @Test
+    void quantilesAreWithinOneBucketOfTheExactValue() {
+        VesselDaySketch sketch = new VesselDaySketch();
+        for (int i = 1; i <= 100; i++) {
+            sketch.recordPoint(i / 10.0, null);
+        }
+
+        assertThat(sketch.speedDeviationQuantile(0.50)).isCloseTo(5.0, within(VesselDaySketch.DEVIATION_BUCKET_WIDTH));
+        assertThat(sketch.speedDeviationQuantile(0.95)).isCloseTo(9.5, within(VesselDaySketch.DEVIATION_BUCKET_WIDTH));
+        assertThat(sketch.speedDeviationQuantile(0.99)).isCloseTo(9.9, within(VesselDaySketch.DEVIATION_BUCKET_WIDTH));
+        assertThat(sketch.getSpeedBandSeconds()).containsKeys("0-1", "25+");
+    }
+}
@@ -0,0 +1,80 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.DistributedIngestProperties;
+import com.geomark.maritimemetrics.config.IngestJobProperties;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.IngestProgress;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class DistributedIngestServiceTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(2);
+
+    private final InMemoryWorkCoordinator coordinator = new InMemoryWorkCoordinator();
+
+    private final IngestPipeline ingestPipeline = mock(IngestPipeline.class);
+
+    private final IngestJobService jobService = new IngestJobService(mock(SimpMessagingTemplate.class), new IngestJobProperties());
+
+    private final DistributedIngestService service = new DistributedIngestService(coordinator, ingestPipeline,
+            mock(DuplicatePointFilter.class), jobService, Schedulers.immediate(), new DistributedIngestProperties());
+
+    @Test
+    void submittedJobRunsUntilAllOfItsUnitsAreFinished() {
+        UUID jobId = UUID.randomUUID();
+        coordinator.publish(jobId, Flux.fromIterable(List.of(new byte[0], new byte[0]))).block();
+        IngestJobService.Job job = jobService.register(jobId, "upload.csv", 100);
+        job.distribute();
+
+        WorkUnit first = coordinator.claim(jobId, "node-a", LEASE, 3).block();
+        WorkUnit second = coordinator.claim(jobId, "node-b", LEASE, 3).block();
+        coordinator.complete(first, "node-a", ImportResult.of(0, 10, 1, 2)).block();
+        service.refresh(job).block();
+
+        IngestProgress progress = jobService.getProgress(jobId);
+        assertThat(progress.state()).isEqualTo(IngestJobState.DISTRIBUTED);
+        assertThat(progress.unitsFinished()).isEqualTo(1);
+        assertThat(progress.rowsWritten()).isEqualTo(10);
+        verify(ingestPipeline, never()).announce(any());
+
+        coordinator.complete(second, "node-b", ImportResult.of(0, 5, 0, 1)).block();
+        service.refresh(job).block();
+
+        progress = jobService.getProgress(jobId);
+        assertThat(progress.state()).isEqualTo(IngestJobState.COMPLETED);
+        assertThat(progress.unitsFinished()).isEqualTo(2);
+        assertThat(progress.rowsWritten()).isEqualTo(15);
+        assertThat(progress.duplicatesSkipped()).isEqualTo(3);
+        assertThat(coordinator.openJobs().collectList().block()).doesNotContain(jobId);
+        verify(ingestPipeline).announce(any());
+    }
+
+    @Test
+    void jobWithAFailedUnitFinishesAsFailed() {
+        UUID jobId = UUID.randomUUID();
+        coordinator.publish(jobId, Flux.fromIterable(List.of(new byte[0]))).block();
+        IngestJobService.Job job = jobService.register(jobId, "upload.csv", 100);
+        job.distribute();
+
+        WorkUnit unit = coordinator.claim(jobId, "node-a", LEASE, 1).block();
+        coordinator.release(unit, "node-a", 1).block();
+        service.refresh(job).block();
+
+        assertThat(jobService.getProgress(jobId).state()).isEqualTo(IngestJobState.FAILED);
+    }
+}
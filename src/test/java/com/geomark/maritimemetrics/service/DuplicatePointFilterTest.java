@@ -0,0 +1,113 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.DeduplicationProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DuplicatePointFilterTest {
+
+    private final VesselMetricsReactiveRepository repository = mock(VesselMetricsReactiveRepository.class);
+
+    private final DeduplicationProperties properties = new DeduplicationProperties();
+
+    @Test
+    void storedPointsAreSkippedOnceTheReadConfirmsThem() {
+        stored("a", 10, 20);
+        when(repository.fetchKeysByVesselIdAndTimestampIn("a", List.of(Instant.ofEpochSecond(20))))
+                .thenReturn(Flux.just(point("a", 20)));
+        DuplicatePointFilter filter = new DuplicatePointFilter(repository, properties);
+
+        assertThat(filter.newSession().filterNew(List.of(point("a", 20), point("a", 30))).block())
+                .containsExactly(point("a", 30));
+    }
+
+    @Test
+    void falsePositivesOfTheBloomFilterAreNotSkipped() {
+        stored("a", 10, 20);
+        // The filter reports the key, but the partition does not hold it
+        when(repository.fetchKeysByVesselIdAndTimestampIn(anyString(), anyList())).thenReturn(Flux.empty());
+        DuplicatePointFilter filter = new DuplicatePointFilter(repository, properties);
+
+        assertThat(filter.newSession().filterNew(List.of(point("a", 20))).block()).containsExactly(point("a", 20));
+    }
+
+    @Test
+    void positivesOfABatchAreConfirmedWithOneReadPerVessel() {
+        stored("a", 10, 20, 30);
+        stored("b", 10);
+        when(repository.fetchKeysByVesselIdAndTimestampIn(anyString(), anyList())).thenReturn(Flux.empty());
+        when(repository.fetchKeysByVesselIdAndTimestampIn("a", List.of(Instant.ofEpochSecond(10), Instant.ofEpochSecond(30))))
+                .thenReturn(Flux.just(point("a", 10), point("a", 30)));
+        when(repository.fetchKeysByVesselIdAndTimestampIn("b", List.of(Instant.ofEpochSecond(10))))
+                .thenReturn(Flux.just(point("b", 10)));
+        DuplicatePointFilter filter = new DuplicatePointFilter(repository, properties);
+
+        List<VesselMetrics> fresh = filter.newSession()
+                .filterNew(List.of(point("a", 10), point("b", 10), point("a", 30), point("b", 40), point("a", 50)))
+                .block();
+
+        assertThat(fresh).containsExactly(point("b", 40), point("a", 50));
+        verify(repository, times(1)).fetchKeysByVesselIdAndTimestampIn(eq("a"), anyList());
+        verify(repository, times(1)).fetchKeysByVesselIdAndTimestampIn(eq("b"), anyList());
+    }
+
+    @Test
+    void keysAreOnlyMarkedOnceWritten() {
+        stored("a", 10);
+        when(repository.fetchKeysByVesselIdAndTimestampIn(anyString(), anyList())).thenReturn(Flux.just(point("a", 30)));
+        DuplicatePointFilter filter = new DuplicatePointFilter(repository, properties);
+
+        // An ingest that stopped before the write leaves no trace in the filter
+        assertThat(filter.newSession().filterNew(List.of(point("a", 30))).block()).hasSize(1);
+        assertThat(filter.newSession().filterNew(List.of(point("a", 30))).block()).hasSize(1);
+        verify(repository, never()).fetchKeysByVesselIdAndTimestampIn(anyString(), anyList());
+
+        filter.recordWritten(List.of(point("a", 30)));
+
+        assertThat(filter.newSession().filterNew(List.of(point("a", 30))).block()).isEmpty();
+    }
+
+    @Test
+    void saturatedFiltersAreRebuiltWithMoreCapacity() {
+        properties.setExpectedPointsPerVessel(10);
+        stored("a", LongStream.rangeClosed(1, 50).toArray());
+        DuplicatePointFilter filter = new DuplicatePointFilter(repository, properties);
+
+        filter.newSession().filterNew(List.of(point("a", 100))).block();
+
+        assertThat(filter.capacityOf("a")).isGreaterThanOrEqualTo(50);
+    }
+
+    private void stored(String vesselId, long... epochSeconds) {
+        List<VesselMetrics> points = LongStream.of(epochSeconds).mapToObj(second -> point(vesselId, second)).toList();
+        when(repository.fetchLatestByVesselId(vesselId)).thenReturn(Mono.just(points.getLast()));
+        when(repository.fetchKeysByVesselId(vesselId)).thenReturn(Flux.fromIterable(points));
+    }
+
+    private static VesselMetrics point(String vesselId, long epochSecond) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.ofEpochSecond(epochSecond));
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        return metric;
+    }
+}
@@ -0,0 +1,209 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.ImportResult;
+import com.geomark.maritimemetrics.model.WorkUnit;
+import com.geomark.maritimemetrics.model.WorkUnitStatus;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryWorkCoordinatorTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(2);
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final MutableClock clock = new MutableClock();
+
+    private final InMemoryWorkCoordinator coordinator = new InMemoryWorkCoordinator(clock);
+
+    @Test
+    void everyUnitIsClaimedByExactlyOneInstance() {
+        UUID jobId = publish(6);
+
+        List<Integer> claimed = new ArrayList<>();
+        WorkUnit unit;
+        int turn = 0;
+        while ((unit = coordinator.claim(jobId, turn++ % 2 == 0 ? "node-a" : "node-b", LEASE, MAX_ATTEMPTS).block()) != null) {
+            claimed.add(unit.unit());
+        }
+
+        assertThat(claimed).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndStaleOwnerIsFenced() {
+        UUID jobId = publish(1);
+        WorkUnit first = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+        assertThat(coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block()).isNull();
+
+        clock.advance(LEASE.plusSeconds(1));
+        WorkUnit reclaimed = coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block();
+
+        assertThat(reclaimed).isNotNull();
+        assertThat(reclaimed.unit()).isEqualTo(first.unit());
+        assertThat(coordinator.renew(first, "node-a", LEASE).block()).isFalse();
+        assertThat(coordinator.complete(first, "node-a", ImportResult.of(0, 1, 0, 0)).block()).isFalse();
+        assertThat(coordinator.complete(reclaimed, "node-b", ImportResult.of(0, 1, 0, 0)).block()).isTrue();
+    }
+
+    @Test
+    void unitWhoseLeasesKeepExpiringFailsAfterTheMaximumAttempts() {
+        UUID jobId = publish(1);
+        WorkUnit unit = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+
+        for (int attempt = 1; attempt < MAX_ATTEMPTS; attempt++) {
+            clock.advance(LEASE.plusSeconds(1));
+            unit = coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block();
+            assertThat(unit).isNotNull();
+            assertThat(unit.attempts()).isEqualTo(attempt);
+        }
+        clock.advance(LEASE.plusSeconds(1));
+
+        assertThat(coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block()).isNull();
+        assertThat(coordinator.unitStatuses(jobId)).containsExactly(WorkUnitStatus.FAILED);
+        assertThat(coordinator.closeIfFinished(jobId).block()).isNotNull();
+    }
+
+    @Test
+    void jobIsClosedOnceWithTheCombinedResult() {
+        UUID jobId = publish(3);
+        WorkUnit first = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+        WorkUnit second = coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block();
+        WorkUnit third = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+
+        coordinator.complete(first, "node-a", ImportResult.of(0, 10, 1, 2)).block();
+        coordinator.complete(second, "node-b", ImportResult.of(0, 5, 0, 1)).block();
+        assertThat(coordinator.closeIfFinished(jobId).block()).isNull();
+
+        // The third unit fails on its only attempt; the job still finishes
+        coordinator.release(third, "node-a", 1).block();
+        assertThat(coordinator.unitStatuses(jobId))
+                .containsExactly(WorkUnitStatus.DONE, WorkUnitStatus.DONE, WorkUnitStatus.FAILED);
+
+        ImportResult result = coordinator.closeIfFinished(jobId).block();
+        assertThat(result).isNotNull();
+        assertThat(result.validRecords().get()).isEqualTo(15);
+        assertThat(result.ingestionErrors().get()).isEqualTo(1);
+        assertThat(result.duplicatesSkipped().get()).isEqualTo(3);
+        assertThat(coordinator.closeIfFinished(jobId).block()).isNull();
+        assertThat(coordinator.openJobs().collectList().block()).doesNotContain(jobId);
+    }
+
+    @Test
+    void progressCombinesTheUnitsAlsoAfterTheJobIsClosed() {
+        UUID jobId = publish(3);
+        WorkUnit first = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+        WorkUnit second = coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block();
+        coordinator.complete(first, "node-a", ImportResult.of(0, 10, 1, 2)).block();
+
+        assertThat(coordinator.progress(jobId).block()).isEqualTo(new DistributedJobProgress(3, 1, 0, 10, 1, 2));
+
+        coordinator.release(second, "node-b", 1).block();
+        WorkUnit third = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+        coordinator.complete(third, "node-a", ImportResult.of(0, 5, 0, 0)).block();
+        coordinator.closeIfFinished(jobId).block();
+
+        DistributedJobProgress progress = coordinator.progress(jobId).block();
+        assertThat(progress).isEqualTo(new DistributedJobProgress(3, 3, 1, 15, 1, 2));
+        assertThat(progress.isFinished()).isTrue();
+        assertThat(coordinator.progress(UUID.randomUUID()).block()).isNull();
+    }
+
+    @Test
+    void cancelledJobFencesItsOwnersAndCloses() {
+        UUID jobId = publish(3);
+        WorkUnit claimed = coordinator.claim(jobId, "node-a", LEASE, MAX_ATTEMPTS).block();
+        WorkUnit done = coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block();
+        coordinator.complete(done, "node-b", ImportResult.of(0, 4, 0, 0)).block();
+
+        assertThat(coordinator.cancel(jobId).block()).isTrue();
+
+        assertThat(coordinator.status(claimed).block()).isEqualTo(WorkUnitStatus.CANCELLED);
+        assertThat(coordinator.status(done).block()).isEqualTo(WorkUnitStatus.DONE);
+        assertThat(coordinator.renew(claimed, "node-a", LEASE).block()).isFalse();
+        assertThat(coordinator.claim(jobId, "node-b", LEASE, MAX_ATTEMPTS).block()).isNull();
+        assertThat(coordinator.closeIfFinished(jobId).block().validRecords().get()).isEqualTo(4);
+        assertThat(coordinator.cancel(jobId).block()).isFalse();
+    }
+
+    @Test
+    void uploadIsSplitByVesselWithTheHeaderInEveryUnit() throws IOException {
+        String csv = "vessel_code,datetime\nA,1\nB,1\nA,2\nC,1\nB,2\n";
+
+        List<Path> parts = DistributedIngestService.split(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 4);
+
+        Map<String, Integer> unitOfVessel = new HashMap<>();
+        int lines = 0;
+        for (int unit = 0; unit < parts.size(); unit++) {
+            List<String> unitLines;
+            try (GZIPInputStream part = new GZIPInputStream(Files.newInputStream(parts.get(unit)))) {
+                unitLines = new String(part.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            }
+            Files.delete(parts.get(unit));
+            assertThat(unitLines.get(0)).isEqualTo("vessel_code,datetime");
+            for (String line : unitLines.subList(1, unitLines.size())) {
+                // A vessel never appears in two units
+                Integer previous = unitOfVessel.put(line.substring(0, 1), unit);
+                assertThat(previous).isIn(null, unit);
+                lines++;
+            }
+        }
+        assertThat(lines).isEqualTo(5);
+        assertThat(unitOfVessel).containsOnlyKeys("A", "B", "C");
+    }
+
+    private UUID publish(int units) {
+        UUID jobId = UUID.randomUUID();
+        List<byte[]> payloads = new ArrayList<>();
+        for (int i = 0; i < units; i++) {
+            payloads.add(new byte[]{(byte) i});
+        }
+        coordinator.publish(jobId, Flux.fromIterable(payloads)).block();
+        return jobId;
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
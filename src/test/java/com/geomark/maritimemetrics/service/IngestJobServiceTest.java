@@ -0,0 +1,157 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.IngestJobProperties;
+import com.geomark.maritimemetrics.model.DistributedJobProgress;
+import com.geomark.maritimemetrics.model.IngestJobState;
+import com.geomark.maritimemetrics.model.IngestProgress;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class IngestJobServiceTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+
+    private final MutableClock clock = new MutableClock();
+
+    private final IngestJobService jobService = new IngestJobService(messagingTemplate, new IngestJobProperties(), clock);
+
+    @Test
+    void etaIsDerivedFromTheReadThroughput() throws IOException {
+        IngestJobService.Job job = jobService.register("upload.csv", 1000);
+        job.track(new ByteArrayInputStream(new byte[400])).readAllBytes();
+        clock.advance(Duration.ofSeconds(2));
+
+        IngestProgress progress = job.progress();
+
+        assertThat(progress.bytesPerSecond()).isEqualTo(200);
+        assertThat(progress.etaSeconds()).isEqualTo(3);
+
+        job.finish(IngestJobState.COMPLETED);
+        assertThat(job.progress().etaSeconds()).isZero();
+    }
+
+    @Test
+    void backlogCountsThePointsWaitingInEveryStage() {
+        IngestJobService.Job job = jobService.register("upload.csv", 0);
+        for (int i = 0; i < 5; i++) {
+            job.rowRead();
+        }
+        job.rowsAccepted(3);
+        job.duplicatesSkipped(1);
+        job.rowProcessed();
+        job.rowProcessed();
+        job.rowsWritten(1);
+
+        IngestProgress progress = job.progress();
+
+        assertThat(progress.backlog()).containsExactly(
+                Map.entry("deduplication", 1L),
+                Map.entry("derivation", 1L),
+                Map.entry("write", 1L));
+        assertThat(progress.etaSeconds()).isNull();
+    }
+
+    @Test
+    void progressIsPublishedOnlyWhenTheJobChanged() {
+        IngestJobService.Job job = jobService.register("upload.csv", 0);
+        String destination = IngestJobService.PROGRESS_DESTINATION + job.getId();
+
+        jobService.publishProgress();
+        jobService.publishProgress();
+        verify(messagingTemplate, times(1)).convertAndSend(eq(destination), any(IngestProgress.class));
+
+        job.rowRead();
+        jobService.publishProgress();
+        jobService.publishProgress();
+        verify(messagingTemplate, times(2)).convertAndSend(eq(destination), any(IngestProgress.class));
+
+        job.finish(IngestJobState.COMPLETED);
+        jobService.publishProgress();
+        verify(messagingTemplate, times(3)).convertAndSend(eq(destination), any(IngestProgress.class));
+    }
+
+    @Test
+    void finishedJobCannotBeCancelledAndCancelledJobStaysCancelled() {
+        IngestJobService.Job finished = jobService.register("finished.csv", 0);
+        finished.finish(IngestJobState.COMPLETED);
+        assertThat(jobService.cancel(finished.getId()).state()).isEqualTo(IngestJobState.COMPLETED);
+
+        IngestJobService.Job cancelled = jobService.register("cancelled.csv", 0);
+        assertThat(jobService.cancel(cancelled.getId()).state()).isEqualTo(IngestJobState.CANCELLED);
+        assertThat(cancelled.cancelled().block(Duration.ofSeconds(1))).isNull();
+        cancelled.finish(IngestJobState.COMPLETED);
+        assertThat(cancelled.progress().state()).isEqualTo(IngestJobState.CANCELLED);
+    }
+
+    @Test
+    void distributedJobCanBeCancelled() {
+        IngestJobService.Job job = jobService.register("upload.csv", 0);
+        job.distribute();
+
+        assertThat(jobService.cancel(job.getId()).state()).isEqualTo(IngestJobState.CANCELLED);
+    }
+
+    @Test
+    void distributedJobRunsWithTheProgressOfItsUnits() {
+        IngestJobService.Job job = jobService.register("upload.csv", 1000);
+        job.distribute();
+        clock.advance(Duration.ofSeconds(10));
+
+        job.unitsProgressed(new DistributedJobProgress(4, 1, 0, 100, 2, 5));
+        IngestProgress progress = job.progress();
+
+        assertThat(progress.state()).isEqualTo(IngestJobState.DISTRIBUTED);
+        assertThat(jobService.getDistributedJobs()).containsExactly(job);
+        assertThat(progress.unitsTotal()).isEqualTo(4);
+        assertThat(progress.unitsFinished()).isEqualTo(1);
+        assertThat(progress.rowsWritten()).isEqualTo(100);
+        assertThat(progress.duplicatesSkipped()).isEqualTo(5);
+        assertThat(progress.errors()).isEqualTo(2);
+        assertThat(progress.etaSeconds()).isEqualTo(30);
+
+        job.finish(IngestJobState.COMPLETED);
+        assertThat(job.progress().state()).isEqualTo(IngestJobState.COMPLETED);
+        assertThat(job.progress().etaSeconds()).isZero();
+        assertThat(jobService.getDistributedJobs()).isEmpty();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.geomark.maritimemetrics.config.AnalyticsProperties;
+import com.geomark.maritimemetrics.config.DeduplicationProperties;
+import com.geomark.maritimemetrics.config.IngestJobProperties;
+import com.geomark.maritimemetrics.config.ValidationProperties;
+import com.geomark.maritimemetrics.config.WriteGovernorProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselSketchCounter;
+import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import com.geomark.maritimemetrics.repository.VesselSketchCounterReactiveRepository;
+import com.geomark.maritimemetrics.util.CSVReaderProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.cassandra.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class IngestPipelineTest {
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+    private final IngestJobService jobService = new IngestJobService(mock(SimpMessagingTemplate.class), new IngestJobProperties());
+
+    private final Scheduler blockingScheduler = Schedulers.newBoundedElastic(4, 100, "blocking-test");
+
+    private final IngestPipeline pipeline;
+
+    IngestPipelineTest() {
+        VesselProcessorService processorService = spy(new VesselProcessorService(null,
+                new VesselMetricsValidationService(new ValidationProperties())));
+        doAnswer(invocation -> {
+            List<VesselMetrics> batch = invocation.getArgument(0);
+            batch.forEach(metric -> written.add(metric.getKey().getVesselId() + "@" + metric.getKey().getTimestamp()));
+            return Mono.empty();
+        }).when(processorService).save(anyList());
+
+        ReactiveCassandraOperations cassandraOperations = mock(ReactiveCassandraOperations.class);
+        when(cassandraOperations.update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class))).thenReturn(Mono.just(true));
+        WriteGovernor writeGovernor = new WriteGovernor(new WriteGovernorProperties(), mock(CqlSession.class));
+
+        DeduplicationProperties deduplication = new DeduplicationProperties();
+        deduplication.setEnabled(false);
+
+        pipeline = new IngestPipeline(new VesselParserService(), processorService, writeGovernor,
+                new DuplicatePointFilter(mock(VesselMetricsReactiveRepository.class), deduplication),
+                new VesselAnalyticsService(mock(VesselSketchCounterReactiveRepository.class), cassandraOperations,
+                        writeGovernor, new AnalyticsProperties()),
+                mock(LiveVesselFeedService.class), mock(SimpMessagingTemplate.class), blockingScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        blockingScheduler.dispose();
+    }
+
+    @Test
+    void splitUploadWritesExactlyTheRowsOfTheInput() throws IOException {
+        List<String> expected = new ArrayList<>();
+        String csv = csv(List.of("3001", "3002", "3003", "3004", "3005"), 15, expected);
+
+        List<Path> parts = DistributedIngestService.split(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 4);
+        long rowsWritten = 0;
+        for (Path part : parts) {
+            IngestJobService.Job job = jobService.register(part.getFileName().toString(), 0);
+            pipeline.run(CSVReaderProvider.ofStream(new GZIPInputStream(Files.newInputStream(part))), job).block();
+            rowsWritten += job.progress().rowsWritten();
+            Files.delete(part);
+        }
+
+        assertThat(written).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(rowsWritten).isEqualTo(expected.size());
+    }
+
+    @Test
+    void recordsAreReadOnTheBlockingScheduler() {
+        List<String> expected = new ArrayList<>();
+        String csv = csv(List.of("3001", "3002"), 50, expected);
+        List<String> readers = Collections.synchronizedList(new ArrayList<>());
+
+        pipeline.run(CSVReaderProvider.ofStream(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)))
+                        .doOnNext(record -> readers.add(Thread.currentThread().getName())),
+                jobService.register("upload.csv", 0)).block();
+
+        assertThat(written).hasSize(expected.size());
+        assertThat(readers).isNotEmpty().allMatch(thread -> thread.startsWith("blocking-test"));
+    }
+
+    private static String csv(List<String> vesselIds, int minutes, List<String> keys) {
+        StringBuilder csv = new StringBuilder("vessel_code,datetime,latitude,longitude,power,fuel_consumption,"
+                + "actual_speed_overground,proposed_speed_overground,predicted_fuel_consumption\n");
+        for (int minute = 0; minute < minutes; minute++) {
+            for (String vesselId : vesselIds) {
+                csv.append(String.format("%s,2024-01-01 00:%02d:00,51.9,4.1,5000,1.2,12.5,12.0,1.1\n", vesselId, minute));
+                keys.add(vesselId + "@2024-01-01T00:" + String.format("%02d", minute) + ":00Z");
+            }
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,127 @@
+package com.geomark.maritimemetrics.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geomark.maritimemetrics.config.LiveFeedProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveVesselFeedServiceTest {
+
+    private final List<Runnable> outboundQueue = new ArrayList<>();
+
+    private final List<Message<?>> delivered = new ArrayList<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private final LiveFeedProperties properties = new LiveFeedProperties();
+
+    private final LiveVesselFeedService feed;
+
+    LiveVesselFeedServiceTest() {
+        // Outbound messages are queued until the test delivers them, like a slow client
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(outboundQueue::add);
+        channel.subscribe(delivered::add);
+        feed = new LiveVesselFeedService(channel, objectMapper, properties);
+        feed.init();
+    }
+
+    @Test
+    void updatesAreConflatedPerVesselWithinATick() throws IOException {
+        feed.subscribe("s1", "sub-1", "/topic/vessels/A");
+
+        feed.publish(List.of(point("A", 1, 10.0), point("A", 2, 11.0), point("B", 2, 5.0)));
+        feed.publish(List.of(point("A", 3, 12.0)));
+        feed.tick();
+        deliverAll();
+
+        assertThat(delivered).hasSize(1);
+        JsonNode updates = body(delivered.get(0));
+        assertThat(updates).hasSize(1);
+        assertThat(updates.get(0).get("vesselId").asText()).isEqualTo("A");
+        assertThat(updates.get(0).get("actualSpeed").asDouble()).isEqualTo(12.0);
+        assertThat(SimpMessageHeaderAccessor.getSubscriptionId(delivered.get(0).getHeaders())).isEqualTo("sub-1");
+    }
+
+    @Test
+    void slowSubscriberOnlyGetsTheLatestStateOnceItCatchesUp() throws IOException {
+        feed.subscribe("s1", "sub-1", "/topic/vessels");
+
+        feed.publish(List.of(point("A", 1, 10.0)));
+        feed.tick();
+        assertThat(outboundQueue).hasSize(1);
+
+        // The first message is still queued, so the next ticks send nothing
+        for (int second = 2; second <= 5; second++) {
+            feed.publish(List.of(point("A", second, 10.0 + second), point("B", second, 20.0 + second)));
+            feed.tick();
+        }
+        assertThat(outboundQueue).hasSize(1);
+
+        deliverAll();
+        feed.tick();
+        deliverAll();
+
+        assertThat(delivered).hasSize(2);
+        JsonNode updates = body(delivered.get(1));
+        assertThat(updates).hasSize(2);
+        for (JsonNode update : updates) {
+            assertThat(update.get("actualSpeed").asDouble()).isIn(15.0, 25.0);
+        }
+    }
+
+    @Test
+    void pointsOfUnwatchedVesselsAreDropped() {
+        feed.publish(List.of(point("A", 1, 10.0)));
+        feed.subscribe("s1", "sub-1", "/topic/vessels/A");
+        feed.tick();
+        assertThat(outboundQueue).isEmpty();
+
+        feed.unsubscribe("s1", "sub-1");
+        feed.publish(List.of(point("A", 2, 10.0)));
+        feed.tick();
+        assertThat(outboundQueue).isEmpty();
+    }
+
+    @Test
+    void disabledFeedDropsPoints() {
+        feed.subscribe("s1", "sub-1", "/topic/vessels");
+        properties.setEnabled(false);
+        feed.publish(List.of(point("A", 1, 10.0)));
+
+        properties.setEnabled(true);
+        feed.tick();
+        assertThat(outboundQueue).isEmpty();
+    }
+
+    private void deliverAll() {
+        List<Runnable> tasks = new ArrayList<>(outboundQueue);
+        outboundQueue.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private JsonNode body(Message<?> message) throws IOException {
+        return objectMapper.readTree((byte[]) message.getPayload());
+    }
+
+    private static VesselMetrics point(String vesselId, long epochSecond, double speed) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.ofEpochSecond(epochSecond));
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setActualSpeed(speed);
+        return metric;
+    }
+}
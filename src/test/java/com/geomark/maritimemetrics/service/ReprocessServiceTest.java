@@ -0,0 +1,148 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.geomark.maritimemetrics.config.AnalyticsProperties;
+import com.geomark.maritimemetrics.config.ValidationProperties;
+import com.geomark.maritimemetrics.config.WriteGovernorProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.model.VesselSketchCounter;
+import com.geomark.maritimemetrics.repository.VesselSketchCounterReactiveRepository;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+import com.geomark.maritimemetrics.util.GeoUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.CriteriaDefinition;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.cassandra.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReprocessServiceTest {
+
+    private final VesselMetricsValidationService validationService = new VesselMetricsValidationService(new ValidationProperties());
+
+    private final VesselProcessorService processorService = new VesselProcessorService(null, validationService);
+
+    private final ReactiveCassandraOperations cassandraOperations = mock(ReactiveCassandraOperations.class);
+
+    private final Map<String, Long> counterDeltas = new ConcurrentHashMap<>();
+
+    private final VesselAnalyticsService.Accumulator sketches = new VesselAnalyticsService(
+            mock(VesselSketchCounterReactiveRepository.class),
+            cassandraOperations,
+            new WriteGovernor(new WriteGovernorProperties(), mock(CqlSession.class)),
+            new AnalyticsProperties()).newAccumulator(new ErrorCapture());
+
+    @Test
+    void onlyPointsWithStaleDerivedFieldsAreReturned() {
+        VesselMetrics first = stored("2023-01-01T00:00:00Z", 10.0, 12.0);
+        VesselMetrics second = stored("2023-01-01T01:00:00Z", 10.01, 12.0);
+
+        List<VesselMetrics> changed = new ReprocessService.VesselReprocessor(processorService, sketches, null)
+                .recompute(List.of(first, second));
+
+        assertThat(changed).containsExactly(second);
+        assertThat(second.getActualSpeed()).isCloseTo(GeoUtils.distanceKm(10.0, 20.0, 10.01, 20.0), within(1e-9));
+        assertThat(second.getIsvalid()).isTrue();
+    }
+
+    @Test
+    void reprocessingUpToDatePointsChangesNothing() {
+        List<VesselMetrics> points = new ArrayList<>();
+        for (int hour = 0; hour < 20; hour++) {
+            points.add(stored(String.format("2023-01-01T%02d:00:00Z", hour), 10.0 + hour * 0.01, 12.0));
+        }
+        new ReprocessService.VesselReprocessor(processorService, sketches, null).recompute(points);
+
+        List<VesselMetrics> changed = new ReprocessService.VesselReprocessor(processorService, sketches, null)
+                .recompute(points);
+
+        assertThat(changed).isEmpty();
+    }
+
+    @Test
+    void resumedPartitionUsesThePointsBeforeTheCheckpointAsContext() {
+        VesselMetrics first = stored("2023-01-01T00:00:00Z", 10.0, 12.0);
+        VesselMetrics second = stored("2023-01-01T01:00:00Z", 10.01, 12.0);
+
+        ReprocessService.VesselReprocessor resumed = new ReprocessService.VesselReprocessor(processorService, sketches, first);
+        List<VesselMetrics> changed = resumed.recompute(List.of(second));
+
+        assertThat(changed).containsExactly(second);
+        assertThat(second.getActualSpeed()).isCloseTo(GeoUtils.distanceKm(10.0, 20.0, 10.01, 20.0), within(1e-9));
+        assertThat(resumed.lastTimestamp()).isEqualTo(second.getKey().getTimestamp());
+    }
+
+    @Test
+    void revalidatedPointsAreNotCountedAsRuleHits() {
+        VesselMetrics first = stored("2023-01-01T00:00:00Z", 10.0, 12.0);
+        VesselMetrics second = stored("2023-01-01T01:00:00Z", 10.01, 12.0);
+        second.setFuelConsumption(-1.0);
+
+        new ReprocessService.VesselReprocessor(processorService, sketches, null).recompute(List.of(first, second));
+
+        assertThat(second.getIsvalid()).isFalse();
+        assertThat(validationService.getRuleHits().values()).containsOnly(0L);
+    }
+
+    @Test
+    void sketchCountersOfChangedPointsAreCorrected() {
+        when(cassandraOperations.update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class))).thenAnswer(invocation -> {
+            String component = null;
+            for (CriteriaDefinition criteria : invocation.getArgument(0, Query.class).getCriteriaDefinitions()) {
+                if (criteria.getColumnName().toCql().equals("component")) {
+                    component = (String) criteria.getPredicate().getValue();
+                }
+            }
+            for (Update.AssignmentOp operation : invocation.getArgument(1, Update.class).getUpdateOperations()) {
+                counterDeltas.merge(component, ((Update.IncrOp) operation).getValue().longValue(), Long::sum);
+            }
+            return Mono.just(true);
+        });
+        VesselMetrics first = stored("2023-01-01T00:00:00Z", 10.0, 12.0);
+        VesselMetrics second = stored("2023-01-01T01:00:00Z", 10.01, 12.0);
+        second.setEngineRpm(-1.0);
+
+        new ReprocessService.VesselReprocessor(processorService, sketches, first).recompute(List.of(second));
+        sketches.flush().block();
+
+        // The point turned invalid, so its point, fuel and leg are taken out of the counters
+        assertThat(second.getIsvalid()).isFalse();
+        assertThat(counterDeltas).containsEntry("POINTS", -1L)
+                .containsEntry("FUEL_MILLI", -1000L)
+                .containsEntry("SPEED_BAND_SECONDS", -3600L)
+                .containsEntry("SPEED_DEVIATION", -1L);
+        assertThat(counterDeltas.get("DISTANCE_METERS")).isNegative();
+    }
+
+    private static VesselMetrics stored(String timestamp, double lat, double speed) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId("v1");
+        key.setTimestamp(Instant.parse(timestamp));
+
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setLatitude(lat);
+        metric.setLongitude(20.0);
+        metric.setActualSpeed(speed);
+        metric.setProposedSpeed(speed);
+        metric.setFuelConsumption(1.0);
+        metric.setEngineRpm(1000.0);
+        metric.setIsvalid(true);
+        metric.setDataQualityIssues(List.of());
+        return metric;
+    }
+}
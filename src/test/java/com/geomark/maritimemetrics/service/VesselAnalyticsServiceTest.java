@@ -0,0 +1,80 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.geomark.maritimemetrics.config.AnalyticsProperties;
+import com.geomark.maritimemetrics.config.WriteGovernorProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.model.VesselSketchCounter;
+import com.geomark.maritimemetrics.repository.VesselSketchCounterReactiveRepository;
+import com.geomark.maritimemetrics.util.ErrorCapture;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.cassandra.core.ReactiveCassandraOperations;
+import org.springframework.data.cassandra.core.query.Query;
+import org.springframework.data.cassandra.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VesselAnalyticsServiceTest {
+
+    private final ReactiveCassandraOperations cassandraOperations = mock(ReactiveCassandraOperations.class);
+
+    private final VesselAnalyticsService analyticsService = new VesselAnalyticsService(
+            mock(VesselSketchCounterReactiveRepository.class),
+            cassandraOperations,
+            new WriteGovernor(new WriteGovernorProperties(), mock(CqlSession.class)),
+            new AnalyticsProperties());
+
+    @Test
+    void recordedPointsAreAddedToTheCountersOnFlush() {
+        when(cassandraOperations.update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class))).thenReturn(Mono.just(true));
+        ErrorCapture errors = new ErrorCapture();
+        VesselAnalyticsService.Accumulator sketches = analyticsService.newAccumulator(errors);
+
+        sketches.record(List.of(point("a", 0), point("a", 60))).block();
+        verify(cassandraOperations, never()).update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class));
+
+        sketches.flush().block();
+
+        verify(cassandraOperations, atLeastOnce()).update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class));
+        assertThat(errors.getCounts()).isEmpty();
+    }
+
+    @Test
+    void failedCounterUpdatesAreRecordedAsErrors() {
+        when(cassandraOperations.update(any(Query.class), any(Update.class), eq(VesselSketchCounter.class)))
+                .thenReturn(Mono.error(new IllegalStateException("write timeout")));
+        ErrorCapture errors = new ErrorCapture();
+        VesselAnalyticsService.Accumulator sketches = analyticsService.newAccumulator(errors);
+
+        sketches.record(List.of(point("a", 0))).block();
+        sketches.flush().block();
+
+        assertThat(errors.getCounts()).containsKey("DataProcessingException");
+        assertThat(errors.getSamples()).anyMatch(sample -> sample.contains("write timeout"));
+    }
+
+    private static VesselMetrics point(String vesselId, long epochSecond) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.ofEpochSecond(epochSecond));
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setIsvalid(true);
+        metric.setLatitude(10.0);
+        metric.setLongitude(20.0);
+        metric.setFuelConsumption(1.5);
+        return metric;
+    }
+}
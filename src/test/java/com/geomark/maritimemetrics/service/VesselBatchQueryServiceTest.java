@@ -0,0 +1,56 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.BatchQueryProperties;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.repository.VesselMetricsReactiveRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class VesselBatchQueryServiceTest {
+
+    @Test
+    void partitionsAreMergedInAscendingTimestampOrder() {
+        List<VesselMetrics> first = List.of(point("a", 50), point("a", 30), point("a", 10));
+        List<VesselMetrics> second = List.of(point("b", 40), point("b", 20));
+        List<VesselMetrics> empty = List.of();
+
+        List<VesselMetrics> merged = VesselBatchQueryService.mergeByTimestamp(List.of(first, empty, second));
+
+        assertThat(merged)
+                .extracting(metric -> metric.getKey().getTimestamp().getEpochSecond())
+                .containsExactly(10L, 20L, 30L, 40L, 50L);
+        assertThat(merged)
+                .extracting(metric -> metric.getKey().getVesselId())
+                .containsExactly("a", "b", "a", "b", "a");
+    }
+
+    @Test
+    void queryWithoutTimeRangeIsRejected() {
+        VesselBatchQueryService service = new VesselBatchQueryService(mock(VesselMetricsReactiveRepository.class), new BatchQueryProperties());
+
+        assertThatThrownBy(() -> service.getGroupedVesselMetrics(List.of("a"), null, Instant.EPOCH))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        assertThatThrownBy(() -> service.getMergedVesselMetrics(List.of("a"), Instant.EPOCH, null))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    private static VesselMetrics point(String vesselId, long epochSecond) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.ofEpochSecond(epochSecond));
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        return metric;
+    }
+}
@@ -0,0 +1,100 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ExportFormat;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.util.ColumnarExportWriter;
+import com.geomark.maritimemetrics.util.ExportWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VesselExportServiceTest {
+
+    @Test
+    void tokenRangesAreContiguousAndCoverTheRing() {
+        int splits = 7;
+        long previousEnd = Long.MIN_VALUE;
+        for (int range = 0; range < splits; range++) {
+            long[] bounds = VesselExportService.tokenRange(range, splits);
+            assertThat(bounds[0]).isEqualTo(previousEnd);
+            assertThat(bounds[1]).isGreaterThan(bounds[0]);
+            previousEnd = bounds[1];
+        }
+        assertThat(previousEnd).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void concatenatedCsvPartsFormOneFileWithASingleHeader() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (ExportWriter first = ExportWriter.open(ExportFormat.CSV_GZIP, file, true, 16)) {
+            first.write(point("A", 1, 10.5, List.of()));
+        }
+        try (ExportWriter second = ExportWriter.open(ExportFormat.CSV_GZIP, file, false, 16)) {
+            second.write(point("B", 2, null, List.of(DataQualityIssue.MISSING_DATA, DataQualityIssue.OUT_OF_BOUNDS)));
+        }
+
+        List<String> lines = new String(new GZIPInputStream(new ByteArrayInputStream(file.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8).lines().toList();
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).startsWith("vessel_id,timestamp,");
+        assertThat(lines.get(1)).isEqualTo("A,1970-01-01T00:00:01Z,1.0,2.0,10.5,,,,true,");
+        assertThat(lines.get(2)).isEqualTo("B,1970-01-01T00:00:02Z,1.0,2.0,,,,,true,MISSING_DATA|OUT_OF_BOUNDS");
+    }
+
+    @Test
+    void columnarBlocksStoreEveryColumnContiguously() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (ExportWriter writer = ExportWriter.open(ExportFormat.COLUMNAR, file, false, 2)) {
+            writer.write(point("A", 1, 10.5, List.of()));
+            writer.write(point("B", 2, null, List.of(DataQualityIssue.OUT_OF_BOUNDS)));
+            writer.write(point("A", 3, 12.0, List.of()));
+        }
+
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(file.toByteArray())));
+
+        // First block: two rows, two vessels
+        assertThat(in.readInt()).isEqualTo(ColumnarExportWriter.MAGIC);
+        assertThat(in.readInt()).isEqualTo(2);
+        assertThat(in.readInt()).isEqualTo(2);
+        assertThat(List.of(in.readUTF(), in.readUTF())).containsExactly("A", "B");
+        assertThat(new int[]{in.readInt(), in.readInt()}).containsExactly(0, 1);
+        assertThat(new long[]{in.readLong(), in.readLong()}).containsExactly(1000L, 2000L);
+        assertThat(new double[]{in.readDouble(), in.readDouble()}).containsExactly(1.0, 1.0);
+        assertThat(new double[]{in.readDouble(), in.readDouble()}).containsExactly(2.0, 2.0);
+        assertThat(in.readDouble()).isEqualTo(10.5);
+        assertThat(in.readDouble()).isNaN();
+        in.skipNBytes(3 * 2 * Double.BYTES);
+        assertThat(new byte[]{in.readByte(), in.readByte()}).containsExactly(1, 1);
+        assertThat(new int[]{in.readInt(), in.readInt()}).containsExactly(0, 1 << DataQualityIssue.OUT_OF_BOUNDS.ordinal());
+
+        // Second block: the remaining row
+        assertThat(in.readInt()).isEqualTo(ColumnarExportWriter.MAGIC);
+        assertThat(in.readInt()).isEqualTo(1);
+    }
+
+    private static VesselMetrics point(String vesselId, long epochSecond, Double speed, List<DataQualityIssue> issues) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.ofEpochSecond(epochSecond));
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setLatitude(1.0);
+        metric.setLongitude(2.0);
+        metric.setActualSpeed(speed);
+        metric.setIsvalid(true);
+        metric.setDataQualityIssues(issues);
+        return metric;
+    }
+}
@@ -0,0 +1,82 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.ValidationProperties;
+import com.geomark.maritimemetrics.model.DataQualityIssue;
+import com.geomark.maritimemetrics.model.ValidationRule;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VesselMetricsValidationServiceTest {
+
+    private final VesselMetricsValidationService service = new VesselMetricsValidationService(new ValidationProperties());
+
+    @Test
+    void validPointHasNoIssues() {
+        VesselMetrics metric = point("v1", "2023-01-01T00:00:00Z", 10.0, 20.0, 12.0);
+
+        int mask = service.validateMetrics(metric);
+
+        assertThat(mask).isZero();
+        assertThat(metric.getIsvalid()).isTrue();
+        assertThat(metric.getDataQualityIssues()).isEmpty();
+    }
+
+    @Test
+    void missingAndOutOfBoundsValuesAreFlagged() {
+        VesselMetrics missing = point("v1", "2023-01-01T00:00:00Z", null, 20.0, 12.0);
+        VesselMetrics outOfBounds = point("v1", "2023-01-01T00:00:00Z", 95.0, 20.0, 12.0);
+
+        assertThat(service.validateMetrics(missing)).isEqualTo(ValidationRule.MISSING_FIELDS.bit());
+        assertThat(service.validateMetrics(outOfBounds)).isEqualTo(ValidationRule.LATITUDE_BOUNDS.bit());
+        assertThat(outOfBounds.getDataQualityIssues()).containsExactly(DataQualityIssue.OUT_OF_BOUNDS);
+        assertThat(outOfBounds.getIsvalid()).isFalse();
+    }
+
+    @Test
+    void teleportAndTimestampOrderAreCheckedAgainstThePreviousPoint() {
+        VesselMetrics first = point("v1", "2023-01-01T00:00:00Z", 10.0, 20.0, 12.0);
+        VesselMetrics jump = point("v1", "2023-01-01T00:01:00Z", 12.0, 20.0, 12.0);
+        VesselMetrics stale = point("v1", "2023-01-01T00:00:30Z", 12.0, 20.0, 12.0);
+
+        assertThat(service.validateMetrics(first, null)).isZero();
+        assertThat(service.validateMetrics(jump, first)).isEqualTo(ValidationRule.TELEPORT.bit());
+        assertThat(service.validateMetrics(stale, jump)).isEqualTo(ValidationRule.TIMESTAMP_ORDER.bit());
+        assertThat(service.getRuleHits())
+                .containsEntry(ValidationRule.TELEPORT, 1L)
+                .containsEntry(ValidationRule.TIMESTAMP_ORDER, 1L);
+    }
+
+    @Test
+    void disabledRulesNeverFire() {
+        ValidationProperties properties = new ValidationProperties();
+        properties.setEnabledRules(EnumSet.of(ValidationRule.MISSING_FIELDS));
+        VesselMetricsValidationService restricted = new VesselMetricsValidationService(properties);
+
+        VesselMetrics metric = point("v1", "2023-01-01T00:00:00Z", 95.0, 20.0, -1.0);
+
+        assertThat(restricted.validateMetrics(metric)).isZero();
+        assertThat(metric.getIsvalid()).isTrue();
+    }
+
+    private static VesselMetrics point(String vesselId, String timestamp, Double lat, Double lon, Double speed) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.parse(timestamp));
+
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setLatitude(lat);
+        metric.setLongitude(lon);
+        metric.setActualSpeed(speed);
+        metric.setProposedSpeed(speed);
+        metric.setFuelConsumption(1.0);
+        metric.setEngineRpm(1000.0);
+        return metric;
+    }
+}
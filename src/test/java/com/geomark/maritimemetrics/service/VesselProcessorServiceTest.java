@@ -0,0 +1,83 @@
+package com.geomark.maritimemetrics.service;
+
+import com.geomark.maritimemetrics.config.ValidationProperties;
+import com.geomark.maritimemetrics.model.ValidationRule;
+import com.geomark.maritimemetrics.model.VesselMetrics;
+import com.geomark.maritimemetrics.model.VesselMetricsKey;
+import com.geomark.maritimemetrics.util.GeoUtils;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VesselProcessorServiceTest {
+
+    private final VesselMetricsValidationService validationService = new VesselMetricsValidationService(new ValidationProperties());
+
+    private final VesselProcessorService processorService = new VesselProcessorService(null, validationService);
+
+    @Test
+    void everyPointIsProcessedOnceAgainstThePreviousPointOfItsVessel() {
+        List<VesselMetrics> input = new ArrayList<>();
+        for (int minute = 0; minute < 15; minute++) {
+            input.add(point(minute % 2 == 0 ? "a" : "b", minute, 10.0 + minute * 0.001));
+        }
+
+        VesselProcessorService.Sequence sequence = processorService.newSequence();
+        List<VesselMetrics> processed = input.stream().map(sequence::process).toList();
+
+        assertThat(processed).containsExactlyElementsOf(input);
+        // The third point of vessel a follows its second point, two minutes earlier
+        assertThat(input.get(4).getActualSpeed())
+                .isCloseTo(GeoUtils.distanceKm(10.002, 20.0, 10.004, 20.0) * 30, within(1e-9));
+        assertThat(validationService.getRuleHits().values()).allMatch(hits -> hits == 0);
+    }
+
+    @Test
+    void repeatedTimestampIsSkippedBeforeDerivation() {
+        VesselMetrics first = point("a", 0, 10.0);
+        VesselMetrics second = point("a", 60, 10.01);
+        VesselMetrics repeated = point("a", 60, 10.02);
+        VesselProcessorService.Sequence sequence = processorService.newSequence();
+
+        sequence.process(first);
+        sequence.process(second);
+
+        assertThat(sequence.process(repeated)).isNull();
+        assertThat(repeated.getIsvalid()).isNull();
+        assertThat(second.getIsvalid()).isTrue();
+    }
+
+    @Test
+    void earlierTimestampIsFlaggedWithoutDerivingASpeed() {
+        VesselMetrics first = point("a", 60, 10.0);
+        VesselMetrics stale = point("a", 0, 10.01);
+        VesselProcessorService.Sequence sequence = processorService.newSequence();
+
+        sequence.process(first);
+        sequence.process(stale);
+
+        assertThat(stale.getActualSpeed()).isEqualTo(12.0);
+        assertThat(stale.getDataQualityIssues()).containsExactly(ValidationRule.TIMESTAMP_ORDER.getIssue());
+    }
+
+    private static VesselMetrics point(String vesselId, long minute, double lat) {
+        VesselMetricsKey key = new VesselMetricsKey();
+        key.setVesselId(vesselId);
+        key.setTimestamp(Instant.parse("2023-01-01T00:00:00Z").plusSeconds(minute * 60));
+
+        VesselMetrics metric = new VesselMetrics();
+        metric.setKey(key);
+        metric.setLatitude(lat);
+        metric.setLongitude(20.0);
+        metric.setActualSpeed(12.0);
+        metric.setProposedSpeed(12.0);
+        metric.setFuelConsumption(1.0);
+        metric.setEngineRpm(1000.0);
+        return metric;
+    }
+}
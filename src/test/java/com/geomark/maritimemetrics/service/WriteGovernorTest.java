@@ -0,0 +1,120 @@
+package com.geomark.maritimemetrics.service;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DriverTimeoutException;
+import com.geomark.maritimemetrics.config.WriteGovernorProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class WriteGovernorTest {
+
+    private WriteGovernor governor(int initialConcurrency) {
+        WriteGovernorProperties properties = new WriteGovernorProperties();
+        properties.setMinConcurrency(1);
+        properties.setInitialConcurrency(initialConcurrency);
+        properties.setMaxConcurrency(16);
+        properties.setAdditiveIncrease(3);
+        properties.setMultiplicativeDecrease(0.5);
+        properties.setTargetLatency(Duration.ofMillis(10));
+        return new WriteGovernor(properties, mock(CqlSession.class));
+    }
+
+    @Test
+    void writesBeyondTheLimitWaitForAPermit() {
+        WriteGovernor governor = governor(2);
+        List<Sinks.Empty<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            governor.execute(() -> {
+                Sinks.Empty<Void> write = Sinks.empty();
+                writes.add(write);
+                return write.asMono();
+            }).subscribe();
+        }
+
+        assertThat(writes).hasSize(2);
+        assertThat(governor.getInFlight()).isEqualTo(2);
+
+        writes.getFirst().tryEmitEmpty();
+
+        assertThat(writes).hasSize(3);
+        assertThat(governor.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void limitGrowsByTheAdditiveIncreaseWhenSaturated() {
+        WriteGovernor governor = governor(2);
+
+        saturate(governor);
+        governor.adjust();
+
+        assertThat(governor.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void limitIsNotRaisedWhileTheBudgetIsNotInUse() {
+        WriteGovernor governor = governor(2);
+
+        governor.execute(() -> Mono.just(1)).block();
+        governor.adjust();
+
+        assertThat(governor.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void limitIsCutByTheMultiplicativeDecreaseAfterASlowSample() {
+        WriteGovernor governor = governor(2);
+        saturate(governor);
+        governor.adjust();
+
+        governor.execute(() -> Mono.delay(Duration.ofMillis(50)).then()).block();
+        governor.adjust();
+
+        assertThat(governor.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void timeoutsCutTheLimitAndTheBatchSize() {
+        WriteGovernor governor = governor(8);
+        int batchSize = governor.getBatchSize();
+
+        governor.execute(() -> Mono.error(new DriverTimeoutException("timeout")))
+                .onErrorResume(e -> Mono.empty())
+                .block();
+        governor.adjust();
+
+        assertThat(governor.getLimit()).isEqualTo(4);
+        assertThat(governor.getBatchSize()).isEqualTo(batchSize / 2);
+    }
+
+    @Test
+    void gaugesAreRegisteredOnTheMeterRegistry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        governor(2).bindTo(registry);
+
+        assertThat(registry.get("maritime.ingest.write.concurrency.limit").gauge().value()).isEqualTo(2.0);
+    }
+
+    /**
+     * Keeps as many fast writes in flight as the current limit allows.
+     */
+    private static void saturate(WriteGovernor governor) {
+        List<Sinks.Empty<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < governor.getLimit(); i++) {
+            governor.execute(() -> {
+                Sinks.Empty<Void> write = Sinks.empty();
+                writes.add(write);
+                return write.asMono();
+            }).subscribe();
+        }
+        writes.forEach(Sinks.Empty::tryEmitEmpty);
+    }
+}
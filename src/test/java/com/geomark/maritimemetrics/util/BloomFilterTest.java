@@ -0,0 +1,40 @@
+package com.geomark.maritimemetrics.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void addedKeysAreAlwaysReported() {
+        BloomFilter filter = new BloomFilter(10_000, 0.001);
+        long start = 1_672_531_200_000L;
+
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(start + i * 60_000L);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain(start + i * 60_000L)).isTrue();
+            assertThat(filter.add(start + i * 60_000L)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        long start = 1_672_531_200_000L;
+        for (int i = 0; i < 10_000; i++) {
+            filter.add(start + i * 1_000L);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(start + 500L + i * 1_000L)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
@@ -0,0 +1,73 @@
+package com.geomark.maritimemetrics.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorCaptureTest {
+
+    @Test
+    void errorsAreCountedPerClass() {
+        ErrorCapture errors = new ErrorCapture();
+
+        errors.record(new NumberFormatException("For input string: \"abc\""));
+        errors.record(new NumberFormatException("For input string: \"\""));
+        errors.record(new IllegalStateException("Write timeout"), 500);
+
+        assertThat(errors.getCounts())
+                .containsEntry("NumberFormatException", 2L)
+                .containsEntry("IllegalStateException", 500L);
+    }
+
+    @Test
+    void onlyTheFirstMessagesAreSampled() {
+        ErrorCapture errors = new ErrorCapture(3);
+
+        for (int i = 0; i < 10; i++) {
+            errors.record(new DateTimeParseException("Text could not be parsed", "row " + i, 0));
+        }
+
+        assertThat(errors.getSamples()).hasSize(3);
+        assertThat(errors.getSamples().get(0)).startsWith("DateTimeParseException: ");
+        assertThat(errors.getCounts()).containsEntry("DateTimeParseException", 10L);
+    }
+
+    @Test
+    void errorClassesBeyondTheLimitAreCountedAsOther() {
+        ErrorCapture errors = new ErrorCapture(ErrorCapture.DEFAULT_SAMPLE_SIZE, 2);
+
+        errors.record(new NumberFormatException());
+        errors.record(new IllegalStateException());
+        errors.record(new IllegalArgumentException());
+        errors.record(new NullPointerException());
+        errors.record(new NumberFormatException());
+
+        assertThat(errors.getCounts())
+                .hasSize(3)
+                .containsEntry("NumberFormatException", 2L)
+                .containsEntry(ErrorCapture.OTHER, 2L);
+    }
+
+    @Test
+    void concurrentRecordingLosesNoCounts() throws InterruptedException {
+        ErrorCapture errors = new ErrorCapture(5);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    errors.record(new NumberFormatException("row " + i));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(errors.getCounts()).containsEntry("NumberFormatException", 80_000L);
+        assertThat(errors.getSamples()).hasSize(5);
+    }
+}
@@ -0,0 +1,36 @@
+package com.geomark.maritimemetrics.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    void permitsAreSpacedByTheRate() {
+        RateLimiter limiter = new RateLimiter(1000);
+        long now = System.nanoTime();
+
+        assertThat(limiter.reserve(100, now)).isZero();
+        assertThat(limiter.reserve(100, now)).isEqualTo(100 * MILLI);
+        assertThat(limiter.reserve(50, now + 150 * MILLI)).isEqualTo(50 * MILLI);
+    }
+
+    @Test
+    void idleTimeIsNotBankedAsBurst() {
+        RateLimiter limiter = new RateLimiter(1000);
+        long now = System.nanoTime() + 10_000 * MILLI;
+
+        assertThat(limiter.reserve(500, now)).isZero();
+        assertThat(limiter.reserve(1, now)).isEqualTo(500 * MILLI);
+    }
+
+    @Test
+    void zeroRateMeansNoLimit() {
+        RateLimiter limiter = new RateLimiter(0);
+
+        assertThat(limiter.reserve(1_000_000, System.nanoTime())).isZero();
+    }
+}